@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "pt.ipp.estg"
@@ -17,4 +18,26 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    includes = listOfNotNull(findProperty("jmhIncludes") as String?)
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs the headless load generator against a local server, e.g. -PloadArgs=\"--clients=1000 --duration=60\"."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass = "pt.ipp.estg.Client.LoadGenerator"
+    args = (findProperty("loadArgs") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList()
+}
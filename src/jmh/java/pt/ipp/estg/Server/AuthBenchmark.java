@@ -0,0 +1,92 @@
+package pt.ipp.estg.Server;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.UserBackend;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code AuthBenchmark} class measures {@link Auth#signIn(UserDirectory, String, String)} against a
+ * user directory of each backend loaded from a file of N entries, signing in as the last user of the file.
+ * The files are written to a temporary directory, so the user file of the classpath is left untouched.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class AuthBenchmark {
+    /**
+     * The number of users in the user file.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int userCount;
+    /**
+     * The backend of the directory.
+     */
+    @Param({"Heap", "Mapped"})
+    public UserBackend backend;
+    /**
+     * The path of the user file.
+     */
+    private Path usersFile;
+    /**
+     * The directory loaded from the user file.
+     */
+    private UserDirectory directory;
+
+    /**
+     * Writes a user file with the configured number of users and loads it into a directory.
+     *
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.usersFile = Files.createTempFile("users", ".json");
+
+        List<User> users = new ArrayList<>(this.userCount);
+        for (int i = 0; i < this.userCount; i++) {
+            users.add(new User("user" + i, "user" + i + "@benchmark", "password"));
+        }
+
+        try (FileWriter fileWriter = new FileWriter(this.usersFile.toFile())) {
+            new Gson().toJson(users, fileWriter);
+        }
+
+        this.directory = this.backend == UserBackend.Mapped ? new MappedUserDirectory(this.usersFile.toString(), false) : new HeapUserDirectory(this.usersFile.toString());
+    }
+
+    /**
+     * Deletes the user file, its write-ahead log, and the record file and indexes of the mapped directory.
+     *
+     * @throws IOException If an I/O error occurs while deleting the files.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.usersFile);
+        for (String suffix : new String[]{".wal", ".db", ".db.email", ".db.username"}) {
+            Files.deleteIfExists(this.usersFile.resolveSibling(this.usersFile.getFileName() + suffix));
+        }
+    }
+
+    /**
+     * Signs in as the last user of the file.
+     *
+     * @return The signed-in user.
+     */
+    @Benchmark
+    public User signIn() {
+        return Auth.signIn(this.directory, "user" + (this.userCount - 1) + "@benchmark", "password");
+    }
+}
@@ -0,0 +1,120 @@
+package pt.ipp.estg.Server;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code BroadcastBenchmark} class measures the cost of the {@code /all} fan-out over N
+ * connected clients, and of the {@code /say} fan-out to the clients of one role, using in-memory
+ * connections so only the server work is measured. The clients are spread evenly over the roles.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadcastBenchmark {
+    /**
+     * The number of connected clients.
+     */
+    @Param({"10", "100", "1000", "10000"})
+    public int clientCount;
+    /**
+     * The client handler sending the broadcasts.
+     */
+    private Server.ClientHandler sender;
+    /**
+     * The connected clients.
+     */
+    private List<Server.ClientHandler> handlers;
+
+    /**
+     * Connects the clients, each with an in-memory connection, and registers their sessions.
+     */
+    @Setup
+    public void setUp() {
+        this.handlers = new ArrayList<>();
+
+        for (int i = 0; i < this.clientCount; i++) {
+            User user = new User("user" + i, "user" + i + "@benchmark", "password");
+            user.setRole(Role.values()[i % Role.values().length]);
+            Server.ClientHandler handler = new Server.ClientHandler(new MemoryConnection(), user);
+            this.handlers.add(handler);
+            Server.sessions.add(handler, user.getUsername(), user.getRole());
+        }
+
+        synchronized (Server.clients) {
+            Server.clients.clear();
+            Server.clients.addAll(this.handlers);
+        }
+        this.sender = this.handlers.get(0);
+    }
+
+    /**
+     * Disconnects the clients and removes their sessions.
+     */
+    @TearDown
+    public void tearDown() {
+        synchronized (Server.clients) {
+            Server.clients.clear();
+        }
+        for (int i = 0; i < this.handlers.size(); i++) {
+            Server.sessions.remove(this.handlers.get(i), "user" + i);
+        }
+    }
+
+    /**
+     * Broadcasts a message to every connected client.
+     */
+    @Benchmark
+    public void broadcast() {
+        this.sender.broadcastMessage("Hello everyone!");
+    }
+
+    /**
+     * Sends a message to every connected client with the Sergeant role.
+     */
+    @Benchmark
+    public void say() {
+        this.sender.multicastMessage(Role.Sergeant, "Hello sergeants!");
+    }
+
+    /**
+     * The {@code MemoryConnection} class is a {@link Connection} that only counts the bytes sent to it.
+     */
+    static class MemoryConnection implements Connection {
+        /**
+         * The number of bytes sent to the connection.
+         */
+        long bytesSent;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getAddress() {
+            return "127.0.0.1:0";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void send(EncodedMessage message) {
+            this.bytesSent += message.length();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package pt.ipp.estg.Server;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code CommandParsingBenchmark} class measures the cost of finding and tokenizing the command
+ * of a line in {@code handleAction}, compared with the regular expression split it replaced.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandParsingBenchmark {
+    /**
+     * The line sent by the client.
+     */
+    @Param({
+            "/all Hello everyone, how is it going?",
+            "/whisper general Meet me at the main gate",
+            "/reject-request 3f2a1c9e-8a57-4c3e-9d2b-6f1e0a7b5c4d",
+            "/list-rooms"
+    })
+    public String line;
+
+    /**
+     * Finds the command in the registry and splits the line into its tokens.
+     *
+     * @return The tokens of the command.
+     */
+    @Benchmark
+    public String[] registry() {
+        CommandRegistry.Command command = Server.ClientHandler.ACTION_COMMANDS.lookup(this.line);
+        return command != null ? command.parse(this.line) : null;
+    }
+
+    /**
+     * Splits the line with the regular expression used before the command registry.
+     *
+     * @param blackhole The sink of the result.
+     */
+    @Benchmark
+    public void regexSplit(Blackhole blackhole) {
+        blackhole.consume(this.line.split("\\s+", 3));
+    }
+}
@@ -0,0 +1,97 @@
+package pt.ipp.estg.Server;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ipp.estg.Entities.Request;
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code RequestLookupBenchmark} class measures finding a request by the ID typed in
+ * {@code /accept-request}, with N pending requests. The {@code scan} benchmark follows the
+ * handler before the requests were indexed, copying the requests and comparing the ID of each one as
+ * a string; the {@code lookup} benchmark follows the current handler, which parses the ID and finds the
+ * request directly. The requests are kept in a request store of their own, with its log in a temporary file.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequestLookupBenchmark {
+    /**
+     * The number of pending requests.
+     */
+    @Param({"10", "1000", "100000"})
+    public int requestCount;
+    /**
+     * The ID of the request looked up, as typed by the client.
+     */
+    private String requestId;
+    /**
+     * The path of the log of the request store.
+     */
+    private Path logFile;
+    /**
+     * The request store holding the pending requests.
+     */
+    private RequestStore requests;
+
+    /**
+     * Adds the pending requests to a new request store, looking up the last one added.
+     *
+     * @throws IOException If an I/O error occurs while creating the log file.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        User user = new User("private", "private@benchmark", "password");
+        this.logFile = Files.createTempFile("requests", ".log");
+        this.requests = new RequestStore(this.logFile.toString(), false);
+
+        for (int i = 0; i < this.requestCount; i++) {
+            UUID id = UUID.randomUUID();
+            this.requests.add(id, new Request(user, "Location" + i, "Reason", Role.Sergeant));
+            this.requestId = id.toString();
+        }
+    }
+
+    /**
+     * Deletes the log of the request store.
+     *
+     * @throws IOException If an I/O error occurs while deleting the file.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.logFile);
+    }
+
+    /**
+     * Finds the request by scanning a copy of the pending requests.
+     *
+     * @return The request found.
+     */
+    @Benchmark
+    public Request scan() {
+        for (Map.Entry<UUID, Request> entry : this.requests.snapshot()) {
+            if (entry.getKey().toString().equals(this.requestId)) return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the request the way the {@code /accept-request} handler does.
+     *
+     * @return The request found.
+     */
+    @Benchmark
+    public Request lookup() {
+        return this.requests.get(UUID.fromString(this.requestId));
+    }
+}
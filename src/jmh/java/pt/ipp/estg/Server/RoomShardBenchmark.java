@@ -0,0 +1,100 @@
+package pt.ipp.estg.Server;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ipp.estg.Entities.User;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code RoomShardBenchmark} class measures the throughput of the {@code /room} fan-out as the number
+ * of active rooms grows, with rooms guarded by their own locks or owned by single-threaded shards.
+ * Every operation sends one message to each active room and waits until all of them were delivered.
+ * With locks, the sending thread delivers to every room itself; with shards, the rooms are delivered
+ * to in parallel by up to {@code shards} threads, so on a host with enough cores the rooms sent to per
+ * second grow linearly with the active rooms until every shard is busy.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RoomShardBenchmark {
+    /**
+     * The execution model of the rooms: {@code Locked} or {@code Sharded}.
+     */
+    @Param({"Locked", "Sharded"})
+    public String model;
+    /**
+     * The number of rooms a message is sent to in every operation.
+     */
+    @Param({"1", "2", "4", "8", "16", "64"})
+    public int activeRooms;
+    /**
+     * The number of shards of the sharded model, 0 for the number of available processors.
+     */
+    @Param({"0"})
+    public int shards;
+    /**
+     * The number of members of every room.
+     */
+    @Param({"100"})
+    public int membersPerRoom;
+    /**
+     * The chat rooms.
+     */
+    private RoomRegistry rooms;
+    /**
+     * The sender of the messages of every room, a member of the room.
+     */
+    private Server.ClientHandler[] senders;
+    /**
+     * The message sent to the rooms.
+     */
+    private EncodedMessage message;
+
+    /**
+     * Creates the rooms and fills each one with its members, each with an in-memory connection.
+     *
+     * @throws InterruptedException If interrupted while waiting for the rooms to be filled.
+     */
+    @Setup
+    public void setUp() throws InterruptedException {
+        int shardCount = this.shards > 0 ? this.shards : Runtime.getRuntime().availableProcessors();
+        this.rooms = this.model.equals("Sharded") ? new ShardedRoomRegistry(shardCount) : new LockedRoomRegistry();
+        this.senders = new Server.ClientHandler[this.activeRooms];
+        this.message = EncodedMessage.chat("[01/01/2024 00:00:00] [Room room] (Private)user: Hello room!\n");
+
+        CountDownLatch filled = new CountDownLatch(this.activeRooms * this.membersPerRoom);
+        for (int room = 0; room < this.activeRooms; room++) {
+            String name = "room" + room;
+            for (int member = 0; member < this.membersPerRoom; member++) {
+                String username = name + "-user" + member;
+                Server.ClientHandler handler = new Server.ClientHandler(new BroadcastBenchmark.MemoryConnection(), new User(username, username + "@benchmark", "password"));
+
+                if (member == 0) {
+                    this.senders[room] = handler;
+                    this.rooms.create(name, handler, created -> filled.countDown());
+                } else {
+                    this.rooms.join(name, handler, outcome -> filled.countDown());
+                }
+            }
+        }
+        filled.await();
+    }
+
+    /**
+     * Sends a message to every active room and waits until it was delivered to all their members.
+     *
+     * @throws InterruptedException If interrupted while waiting for the deliveries.
+     */
+    @Benchmark
+    public void sendToActiveRooms() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(this.activeRooms);
+        for (int room = 0; room < this.activeRooms; room++) {
+            this.rooms.send("room" + room, this.senders[room], this.message, outcome -> delivered.countDown());
+        }
+        delivered.await();
+    }
+}
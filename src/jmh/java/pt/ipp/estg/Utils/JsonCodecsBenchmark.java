@@ -0,0 +1,157 @@
+package pt.ipp.estg.Utils;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code JsonCodecsBenchmark} class measures parsing and serializing arrays of N users and N log entries
+ * with the streaming codecs of {@link JsonCodecs}, compared with Gson's reflective binding of a new
+ * {@code Gson} instance per call, as {@link JSON} used to do. The documents are kept in memory, so only
+ * the JSON processing is measured.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonCodecsBenchmark {
+    /**
+     * The number of users and log entries in each document.
+     */
+    @Param({"100", "10000", "100000"})
+    public int size;
+    /**
+     * The users serialized.
+     */
+    private List<User> users;
+    /**
+     * The log entries serialized.
+     */
+    private List<Logger.LogEntry> logEntries;
+    /**
+     * The JSON document of the users.
+     */
+    private String usersJson;
+    /**
+     * The JSON document of the log entries.
+     */
+    private String logsJson;
+
+    /**
+     * Creates the users and log entries, and their JSON documents.
+     */
+    @Setup
+    public void setUp() {
+        this.users = new ArrayList<>(this.size);
+        this.logEntries = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            this.users.add(new User(UUID.randomUUID(), "user" + i, "user" + i + "@benchmark", "password", Role.values()[i % Role.values().length]));
+            this.logEntries.add(new Logger.LogEntry("01/01/2024 00:00:00", "127.0.0.1:" + i, "Message", "User (Private)user" + i + " sent a message to everyone."));
+        }
+
+        this.usersJson = new Gson().toJson(this.users);
+        this.logsJson = new Gson().toJson(this.logEntries);
+    }
+
+    /**
+     * Parses the users with reflection.
+     *
+     * @return The users.
+     */
+    @Benchmark
+    public User[] parseUsersReflective() {
+        return new Gson().fromJson(this.usersJson, User[].class);
+    }
+
+    /**
+     * Parses the users with the streaming codec.
+     *
+     * @param blackhole The sink of the users.
+     * @throws IOException If the document is invalid.
+     */
+    @Benchmark
+    public void parseUsersStreaming(Blackhole blackhole) throws IOException {
+        JsonCodecs.readArray(new StringReader(this.usersJson), JsonCodecs.USER, blackhole::consume);
+    }
+
+    /**
+     * Serializes the users with reflection.
+     *
+     * @return The JSON document.
+     */
+    @Benchmark
+    public String serializeUsersReflective() {
+        return new Gson().toJson(this.users);
+    }
+
+    /**
+     * Serializes the users with the streaming codec.
+     *
+     * @return The JSON document.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Benchmark
+    public String serializeUsersStreaming() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonCodecs.writeArray(writer, JsonCodecs.USER, this.users);
+        return writer.toString();
+    }
+
+    /**
+     * Parses the log entries with reflection.
+     *
+     * @return The log entries.
+     */
+    @Benchmark
+    public Logger.LogEntry[] parseLogsReflective() {
+        return new Gson().fromJson(this.logsJson, Logger.LogEntry[].class);
+    }
+
+    /**
+     * Parses the log entries with the streaming codec.
+     *
+     * @param blackhole The sink of the log entries.
+     * @throws IOException If the document is invalid.
+     */
+    @Benchmark
+    public void parseLogsStreaming(Blackhole blackhole) throws IOException {
+        JsonCodecs.readArray(new StringReader(this.logsJson), JsonCodecs.LOG_ENTRY, blackhole::consume);
+    }
+
+    /**
+     * Serializes the log entries with reflection.
+     *
+     * @return The JSON document.
+     */
+    @Benchmark
+    public String serializeLogsReflective() {
+        return new Gson().toJson(this.logEntries);
+    }
+
+    /**
+     * Serializes the log entries with the streaming codec.
+     *
+     * @return The JSON document.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Benchmark
+    public String serializeLogsStreaming() throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonCodecs.writeArray(writer, JsonCodecs.LOG_ENTRY, this.logEntries);
+        return writer.toString();
+    }
+}
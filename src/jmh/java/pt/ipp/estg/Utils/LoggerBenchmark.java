@@ -0,0 +1,96 @@
+package pt.ipp.estg.Utils;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code LoggerBenchmark} class measures the cost of logging one action with {@link Logger#log},
+ * which appends to the audit log, compared with rewriting a {@code logs.json} array that already holds
+ * N entries with {@link JSON#saveLog}. The log file of the classpath is replaced before every
+ * iteration and restored after the benchmark.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoggerBenchmark {
+    /**
+     * The number of entries in the log before each iteration.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int logSize;
+    /**
+     * The path of the log file.
+     */
+    private Path logsFile;
+    /**
+     * The contents of the log file before the benchmark.
+     */
+    private byte[] originalLogs;
+
+    /**
+     * Saves the log file, so it can be restored after the benchmark.
+     *
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    @Setup(Level.Trial)
+    public void saveLogs() throws IOException {
+        this.logsFile = Path.of(Resources.getPathFromResources("logs.json"));
+        this.originalLogs = Files.readAllBytes(this.logsFile);
+    }
+
+    /**
+     * Writes a log file with the configured number of entries.
+     *
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    @Setup(Level.Iteration)
+    public void fillLogs() throws IOException {
+        List<Logger.LogEntry> entries = new ArrayList<>(this.logSize);
+        for (int i = 0; i < this.logSize; i++) {
+            entries.add(new Logger.LogEntry("01/01/2024 00:00:00", "127.0.0.1:" + i, "Message", "User (Private)user" + i + " sent a message to everyone."));
+        }
+
+        try (FileWriter fileWriter = new FileWriter(this.logsFile.toFile())) {
+            new Gson().toJson(entries, fileWriter);
+        }
+    }
+
+    /**
+     * Restores the log file.
+     *
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    @TearDown(Level.Trial)
+    public void restoreLogs() throws IOException {
+        Files.write(this.logsFile, this.originalLogs);
+    }
+
+    /**
+     * Logs one action through the audit log.
+     */
+    @Benchmark
+    public void log() {
+        Logger.log("127.0.0.1:1024", "Message", "User (General)general sent a message to everyone.");
+    }
+
+    /**
+     * Appends one entry by rewriting the whole JSON array of the log file.
+     */
+    @Benchmark
+    public void rewriteJson() {
+        JSON.saveLog(new Logger.LogEntry("01/01/2024 00:00:00", "127.0.0.1:1024", "Message", "User (General)general sent a message to everyone."));
+    }
+}
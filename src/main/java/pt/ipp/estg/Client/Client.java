@@ -1,13 +1,20 @@
 package pt.ipp.estg.Client;
 
+import pt.ipp.estg.Utils.MulticastGroups;
+
 import java.io.*;
-import java.net.Socket;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * The {@code Client} class represents a simple client for communication
  * with a server using sockets. It allows sending and receiving messages
- * to and from the server.
+ * to and from the server. When the server delivers the messages sent to a role or to everyone
+ * through UDP multicast, the client joins the groups the server tells it to and prints
+ * the messages received on them.
  *
  * @author Carlos Leite, Sergio Felix
  * @version 1.0
@@ -25,6 +32,19 @@ public class Client {
      * The buffered reader used for reading messages from the server.
      */
     private BufferedReader bufferedReader;
+    /**
+     * The multicast socket used for receiving messages sent to a role or to everyone,
+     * or {@code null} if the server hasn't asked the client to join any group.
+     */
+    private MulticastSocket multicastSocket;
+    /**
+     * The multicast groups the client has joined.
+     */
+    private final List<InetAddress> joinedGroups = new ArrayList<>();
+    /**
+     * The username of the signed-in user, used for ignoring its own multicast messages.
+     */
+    private volatile String username;
 
     /**
      * Constructs a new {@code Client} object with the specified socket.
@@ -87,7 +107,11 @@ public class Client {
             while (socket.isConnected()) {
                 try {
                     messageFromGroupChat = bufferedReader.readLine();
-                    System.out.println(messageFromGroupChat);
+                    if (messageFromGroupChat != null && messageFromGroupChat.startsWith("/multicast-join")) {
+                        joinMulticastGroups(messageFromGroupChat);
+                    } else {
+                        System.out.println(messageFromGroupChat);
+                    }
                 } catch (Exception e) {
                     handleException("An unexpected error has occurred during listening messages!", e);
                 }
@@ -95,6 +119,73 @@ public class Client {
         }).start();
     }
 
+    /**
+     * Joins the multicast groups listed by the server, in the format
+     * "/multicast-join {port} {username} {group}...", leaving the groups that are no longer listed.
+     * The multicast socket and its listener are created the first time.
+     *
+     * @param command The join command sent by the server.
+     */
+    private synchronized void joinMulticastGroups(String command) {
+        String[] commandArgs = command.split("\\s+");
+
+        try {
+            if (this.multicastSocket == null) {
+                this.multicastSocket = new MulticastSocket(Integer.parseInt(commandArgs[1]));
+                listenForMulticastMessages(this.multicastSocket);
+            }
+
+            this.username = commandArgs[2];
+            NetworkInterface networkInterface = MulticastGroups.getInterface();
+            List<InetAddress> groups = new ArrayList<>();
+            for (int i = 3; i < commandArgs.length; i++) {
+                groups.add(InetAddress.getByName(commandArgs[i]));
+            }
+
+            for (InetAddress group : this.joinedGroups) {
+                if (!groups.contains(group)) {
+                    this.multicastSocket.leaveGroup(new InetSocketAddress(group, 0), networkInterface);
+                }
+            }
+            for (InetAddress group : groups) {
+                if (!this.joinedGroups.contains(group)) {
+                    this.multicastSocket.joinGroup(new InetSocketAddress(group, 0), networkInterface);
+                }
+            }
+
+            this.joinedGroups.clear();
+            this.joinedGroups.addAll(groups);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Couldn't join the multicast groups, messages to your role or to everyone won't be received!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Listens for multicast messages in a separate thread, printing every message
+     * that wasn't sent by the signed-in user.
+     *
+     * @param socket The multicast socket to receive from.
+     */
+    private void listenForMulticastMessages(MulticastSocket socket) {
+        Thread listener = new Thread(() -> {
+            byte[] buffer = new byte[MulticastGroups.MAX_DATAGRAM_SIZE];
+            while (!socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    String datagram = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+                    int separator = datagram.indexOf('\n');
+                    if (separator < 0 || datagram.substring(0, separator).equals(this.username)) continue;
+                    System.out.print(datagram.substring(separator + 1));
+                } catch (IOException e) {
+                    if (!socket.isClosed()) System.err.println("An unexpected error has occurred during listening multicast messages!\n" + e.getMessage());
+                }
+            }
+        });
+        listener.setDaemon(true);
+        listener.start();
+    }
+
     /**
      * Handles exceptions by printing an error message and exiting the program.
      *
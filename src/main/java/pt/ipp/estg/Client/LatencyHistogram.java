@@ -0,0 +1,118 @@
+package pt.ipp.estg.Client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LatencyHistogram} class records latencies in microseconds into log-linear buckets,
+ * so it can be shared by thousands of threads without locks and without keeping every sample.
+ * Each power of two is split into 64 buckets, which bounds the error of the reported percentiles to about 1.6%.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+class LatencyHistogram {
+    /**
+     * The number of buckets in each power of two.
+     */
+    private static final int SUB_BUCKETS = 64;
+    /**
+     * The number of bits used for indexing the buckets of a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 6;
+    /**
+     * The number of samples in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    /**
+     * The total number of samples.
+     */
+    private final LongAdder total = new LongAdder();
+    /**
+     * The highest recorded latency, in microseconds.
+     */
+    private volatile long max = 0;
+
+    /**
+     * Records a latency.
+     *
+     * @param micros The latency in microseconds; negative values are recorded as zero.
+     */
+    void record(long micros) {
+        long value = Math.max(0, micros);
+        this.counts.incrementAndGet(indexOf(value));
+        this.total.increment();
+        if (value > this.max) {
+            synchronized (this) {
+                if (value > this.max) this.max = value;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of recorded samples.
+     *
+     * @return The number of samples.
+     */
+    long count() {
+        return this.total.sum();
+    }
+
+    /**
+     * Gets the highest recorded latency.
+     *
+     * @return The highest latency in microseconds.
+     */
+    long max() {
+        return this.max;
+    }
+
+    /**
+     * Gets the latency below which the specified fraction of the samples fall.
+     *
+     * @param percentile The percentile, between 0 and 100 (e.g., 99.9).
+     * @return The latency in microseconds, or {@code 0} if there are no samples.
+     */
+    long percentile(double percentile) {
+        long count = count();
+        if (count == 0) return 0;
+
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+
+        for (int i = 0; i < this.counts.length(); i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) return Math.min(upperBoundOf(i), this.max);
+        }
+
+        return this.max;
+    }
+
+    /**
+     * Gets the bucket of a latency.
+     *
+     * @param value The latency in microseconds.
+     * @return The index of the bucket.
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the highest latency that falls in a bucket.
+     *
+     * @param index The index of the bucket.
+     * @return The highest latency of the bucket in microseconds.
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
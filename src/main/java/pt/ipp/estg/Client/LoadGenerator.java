@@ -0,0 +1,361 @@
+package pt.ipp.estg.Client;
+
+import pt.ipp.estg.Enums.Role;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LoadGenerator} class is a headless load-test tool that opens many simulated clients
+ * against a running server, signs them up (or in, if they already exist), and makes each one send
+ * commands with a think time between them, until the test duration is over. Every client runs on
+ * its own virtual threads, so thousands of clients can be simulated from a single process.
+ * <p>
+ * The commands are either generated from a mix of {@code /whisper}, {@code /say}, {@code /all},
+ * {@code /room} and {@code /launch-missile}, or replayed from a script such as {@code commands.txt}.
+ * Every message carries the time it was sent, so the clients that receive it measure the end-to-end
+ * delivery latency. The percentiles of the latency and the throughput are reported at the end.
+ * <p>
+ * Options, all in the "--name=value" format:
+ * <ul>
+ *     <li>{@code host}, {@code port}: the server address (localhost:1024).</li>
+ *     <li>{@code clients}: the number of simulated clients (100).</li>
+ *     <li>{@code duration}: the duration of the test in seconds (30).</li>
+ *     <li>{@code think}: the think time between commands in milliseconds, either fixed or a "min-max" range (500-1500).</li>
+ *     <li>{@code mix}: the weight of each generated command (whisper:30,say:20,all:5,room:40,launch:5).</li>
+ *     <li>{@code script}: a file of commands replayed in a loop instead of the mix; {user}, {role}, {room} and {target}
+ *     are replaced by a random user, a random role, the client's room and a random location, and authentication and {id} lines are skipped.</li>
+ *     <li>{@code rooms}: the number of chat rooms the clients are spread across (10).</li>
+ *     <li>{@code prefix}: the prefix of the simulated usernames (load).</li>
+ *     <li>{@code auth-concurrency}: the number of clients authenticating at the same time (1).</li>
+ *     <li>{@code quiet}: whether the clients ask the server for the quiet mode (true).</li>
+ * </ul>
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public class LoadGenerator {
+    /**
+     * The password of every simulated user.
+     */
+    private static final String PASSWORD = "load";
+    /**
+     * The commands whose last token is the text of a message, the only ones the time they were sent is appended to;
+     * the others, such as the room and request commands, would take it as part of a name or an ID.
+     */
+    private static final Set<String> TIMESTAMPED_COMMANDS = Set.of("/whisper", "/say", "/all", "/room", "/launch-missile");
+    /**
+     * The options of the load test.
+     */
+    private final Map<String, String> options;
+    /**
+     * The simulated clients that were authenticated.
+     */
+    private final List<SimulatedClient> clients = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * The delivery latencies of the timestamped messages.
+     */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    /**
+     * The number of timestamped messages received by the clients.
+     */
+    private final LongAdder deliveries = new LongAdder();
+    /**
+     * The number of commands sent by the clients.
+     */
+    private final LongAdder commandsSent = new LongAdder();
+    /**
+     * The commands replayed by the clients, or {@code null} if the commands are generated from the mix.
+     */
+    private List<String> script;
+    /**
+     * The generated commands, each repeated as many times as its weight.
+     */
+    private List<String> mix;
+    /**
+     * Whether the clients keep sending commands.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new {@code LoadGenerator} with the specified options.
+     *
+     * @param options The options of the load test.
+     */
+    public LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    /**
+     * The main entry point for the load generator.
+     *
+     * @param args The options of the load test, in the "--name=value" format.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                System.err.println("Invalid option " + arg + ", expected --name=value!");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        try {
+            new LoadGenerator(options).run();
+        } catch (IOException e) {
+            System.err.println("Couldn't read the load test script!\n" + e.getMessage());
+            System.exit(1);
+        } catch (Exception e) {
+            System.err.println("An unexpected error has occurred during the load test!\n" + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the load test: connects and authenticates the clients, lets them send commands
+     * for the test duration, waits for the last deliveries and prints the report.
+     *
+     * @throws Exception If an error occurs while reading the script or waiting for the clients.
+     */
+    public void run() throws Exception {
+        String scriptFile = this.options.get("script");
+        if (scriptFile != null) this.script = loadScript(Path.of(scriptFile));
+        this.mix = parseMix(option("mix", "whisper:30,say:20,all:5,room:40,launch:5"));
+
+        int clientCount = Integer.parseInt(option("clients", "100"));
+        long duration = Long.parseLong(option("duration", "30")) * 1000;
+        Semaphore authPermits = new Semaphore(Integer.parseInt(option("auth-concurrency", "1")));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.printf("Connecting %s clients to %s:%s...%n", clientCount, option("host", "localhost"), option("port", "1024"));
+            List<Future<?>> connections = new ArrayList<>();
+            for (int i = 0; i < clientCount; i++) {
+                int index = i;
+                connections.add(executor.submit(() -> connect(index, executor, authPermits)));
+            }
+            for (Future<?> connection : connections) connection.get();
+            System.out.printf("%s of %s clients authenticated, running for %s seconds...%n", this.clients.size(), clientCount, duration / 1000);
+
+            long start = System.nanoTime();
+            for (SimulatedClient client : this.clients) {
+                executor.submit(() -> sendCommands(client));
+            }
+            Thread.sleep(duration);
+            this.running = false;
+            long elapsed = System.nanoTime() - start;
+
+            Thread.sleep(2000);
+            report(elapsed);
+            this.clients.forEach(SimulatedClient::close);
+        }
+    }
+
+    /**
+     * Connects and authenticates a simulated client, then joins its chat room.
+     *
+     * @param index       The index of the client.
+     * @param executor    The executor used for running the client listener.
+     * @param authPermits The permits limiting the number of clients authenticating at the same time.
+     */
+    private void connect(int index, ExecutorService executor, Semaphore authPermits) {
+        String username = option("prefix", "load") + index;
+        Role role = Role.values()[index % Role.values().length];
+
+        try {
+            SimulatedClient client = new SimulatedClient(option("host", "localhost"), Integer.parseInt(option("port", "1024")), username);
+            executor.submit(() -> client.listenForMessages(this.histogram, this.deliveries));
+
+            authPermits.acquire();
+            boolean authenticated;
+            try {
+                authenticated = client.authenticate(username + "@load.test", PASSWORD, role.name(), 30000);
+            } finally {
+                authPermits.release();
+            }
+
+            if (!authenticated) {
+                System.err.println("Couldn't authenticate " + username + "!");
+                client.close();
+                return;
+            }
+
+            if (Boolean.parseBoolean(option("quiet", "true"))) client.send("/quiet");
+            client.send("/create-room " + roomOf(index));
+            client.send("/join-room " + roomOf(index));
+            this.clients.add(client);
+        } catch (Exception e) {
+            System.err.println("Couldn't connect " + username + "!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends commands from the script or the mix, with a think time between them, until the test is over.
+     *
+     * @param client The client sending the commands.
+     */
+    private void sendCommands(SimulatedClient client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = Integer.parseInt(client.getUsername().substring(option("prefix", "load").length()));
+        int line = random.nextInt(this.script != null ? Math.max(1, this.script.size()) : 1);
+
+        try {
+            Thread.sleep(thinkTime(random));
+            while (this.running) {
+                String template = this.script != null ? this.script.get(line++ % this.script.size()) : this.mix.get(random.nextInt(this.mix.size()));
+                client.send(timestamp(render(template, index, random)));
+                this.commandsSent.increment();
+                Thread.sleep(thinkTime(random));
+            }
+        } catch (IOException e) {
+            System.err.println("Lost connection of " + client.getUsername() + "!\n" + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appends the time a command is sent to it, if its last token is the text of a message,
+     * so the clients that receive the message measure its delivery latency.
+     *
+     * @param command The command to send.
+     * @return The command, with the time it is sent if it carries a message.
+     */
+    private static String timestamp(String command) {
+        int space = command.indexOf(' ');
+        String name = space < 0 ? command : command.substring(0, space);
+
+        return TIMESTAMPED_COMMANDS.contains(name) ? command + SimulatedClient.TIMESTAMP_MARKER + System.nanoTime() : command;
+    }
+
+    /**
+     * Replaces the placeholders of a command with a random user, a random role, the client's room and a random location.
+     *
+     * @param template The command with placeholders.
+     * @param index    The index of the client sending the command.
+     * @param random   The random number generator of the client.
+     * @return The command to send.
+     */
+    private String render(String template, int index, Random random) {
+        int clientCount = Integer.parseInt(option("clients", "100"));
+
+        return template
+                .replace("{user}", option("prefix", "load") + random.nextInt(clientCount))
+                .replace("{role}", Role.values()[random.nextInt(Role.values().length)].name())
+                .replace("{room}", roomOf(index))
+                .replace("{target}", "Target" + random.nextInt(1000));
+    }
+
+    /**
+     * Gets the chat room of a client.
+     *
+     * @param index The index of the client.
+     * @return The name of the chat room.
+     */
+    private String roomOf(int index) {
+        return "load-room-" + index % Integer.parseInt(option("rooms", "10"));
+    }
+
+    /**
+     * Gets a random think time within the configured range.
+     *
+     * @param random The random number generator of the client.
+     * @return The think time in milliseconds.
+     */
+    private long thinkTime(Random random) {
+        String[] range = option("think", "500-1500").split("-", 2);
+        long min = Long.parseLong(range[0]);
+        long max = range.length > 1 ? Long.parseLong(range[1]) : min;
+        return max > min ? min + random.nextLong(max - min + 1) : min;
+    }
+
+    /**
+     * Loads the commands of a script, skipping blank lines, authentication commands,
+     * and commands that depend on a request ID only known at runtime.
+     *
+     * @param file The script file.
+     * @return The commands of the script.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    private static List<String> loadScript(Path file) throws IOException {
+        List<String> commands = new ArrayList<>();
+
+        for (String line : Files.readAllLines(file)) {
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("/sign-") || command.contains("{id}")) continue;
+            commands.add(command);
+        }
+
+        if (commands.isEmpty()) throw new IOException("The script " + file + " has no commands to replay.");
+
+        return commands;
+    }
+
+    /**
+     * Parses the mix of generated commands, in the "command:weight,..." format.
+     *
+     * @param mix The mix of commands.
+     * @return The command templates, each repeated as many times as its weight.
+     */
+    private static List<String> parseMix(String mix) {
+        Map<String, String> templates = Map.of(
+                "whisper", "/whisper {user} hello",
+                "say", "/say {role} hello",
+                "all", "/all hello",
+                "room", "/room {room} hello",
+                "launch", "/launch-missile {target} load-test"
+        );
+        List<String> commands = new ArrayList<>();
+
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split(":", 2);
+            String template = templates.get(weight[0]);
+            if (template == null) throw new IllegalArgumentException("Unknown command " + weight[0] + " in the mix.");
+            commands.addAll(Collections.nCopies(weight.length > 1 ? Integer.parseInt(weight[1]) : 1, template));
+        }
+
+        if (commands.isEmpty()) throw new IllegalArgumentException("The mix has no commands.");
+
+        return commands;
+    }
+
+    /**
+     * Prints the throughput and the delivery latency percentiles.
+     *
+     * @param elapsed The duration of the test in nanoseconds.
+     */
+    private void report(long elapsed) {
+        double seconds = elapsed / 1e9;
+
+        System.out.println("[Load Test Report]");
+        System.out.printf("Clients: %s%n", this.clients.size());
+        System.out.printf("Commands sent: %s (%.1f/s)%n", this.commandsSent.sum(), this.commandsSent.sum() / seconds);
+        System.out.printf("Messages delivered: %s (%.1f/s)%n", this.deliveries.sum(), this.deliveries.sum() / seconds);
+        System.out.printf("Latency (ms): p50 %.3f, p99 %.3f, p999 %.3f, max %.3f%n",
+                this.histogram.percentile(50) / 1000.0,
+                this.histogram.percentile(99) / 1000.0,
+                this.histogram.percentile(99.9) / 1000.0,
+                this.histogram.max() / 1000.0);
+    }
+
+    /**
+     * Gets the value of an option.
+     *
+     * @param name         The name of the option.
+     * @param defaultValue The value returned when the option isn't set.
+     * @return The value of the option.
+     */
+    private String option(String name, String defaultValue) {
+        return this.options.getOrDefault(name, defaultValue);
+    }
+}
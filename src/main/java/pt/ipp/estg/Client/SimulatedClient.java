@@ -0,0 +1,168 @@
+package pt.ipp.estg.Client;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code SimulatedClient} class represents one headless client of the {@link LoadGenerator}.
+ * It speaks the same line-based protocol as the interactive {@link Client}, but its commands come
+ * from the load generator instead of the keyboard, and the messages it receives are not printed:
+ * the ones carrying a send timestamp are used for measuring the end-to-end delivery latency.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+class SimulatedClient {
+    /**
+     * The marker that precedes the send timestamp appended to every generated message.
+     */
+    static final String TIMESTAMP_MARKER = " #lg";
+    /**
+     * The socket associated with the client-server communication.
+     */
+    private final Socket socket;
+    /**
+     * The buffered writer used for sending messages to the server.
+     */
+    private final BufferedWriter bufferedWriter;
+    /**
+     * The buffered reader used for reading messages from the server.
+     */
+    private final BufferedReader bufferedReader;
+    /**
+     * The username of the simulated user.
+     */
+    private final String username;
+    /**
+     * Completed with the result of the sign-up or sign-in attempt in progress.
+     */
+    private volatile CompletableFuture<Boolean> authentication = new CompletableFuture<>();
+
+    /**
+     * Constructs a new {@code SimulatedClient} connected to the specified server.
+     *
+     * @param host     The server host.
+     * @param port     The server port.
+     * @param username The username of the simulated user.
+     * @throws IOException If an I/O error occurs while connecting.
+     */
+    SimulatedClient(String host, int port, String username) throws IOException {
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.bufferedWriter = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.bufferedReader = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+        this.username = username;
+    }
+
+    /**
+     * Gets the username of the simulated user.
+     *
+     * @return The username.
+     */
+    String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Signs the user up, or signs it in if it already exists from a previous run.
+     *
+     * @param email    The email address of the user.
+     * @param password The password of the user.
+     * @param role     The role of the user.
+     * @param timeout  The maximum time to wait for each attempt, in milliseconds.
+     * @return {@code true} if the user is authenticated, {@code false} otherwise.
+     * @throws Exception If an error occurs while waiting for the server.
+     */
+    boolean authenticate(String email, String password, String role, long timeout) throws Exception {
+        if (attempt("/sign-up " + this.username + " " + email + " " + password + " " + role, timeout)) return true;
+        return attempt("/sign-in " + email + " " + password, timeout);
+    }
+
+    /**
+     * Sends an authentication command and waits for the server to accept or refuse it.
+     *
+     * @param command The authentication command.
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @return {@code true} if the server accepted the command, {@code false} otherwise.
+     * @throws Exception If an error occurs while waiting for the server.
+     */
+    private boolean attempt(String command, long timeout) throws Exception {
+        this.authentication = new CompletableFuture<>();
+        send(command);
+        return this.authentication.get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a command to the server.
+     *
+     * @param command The command to send.
+     * @throws IOException If an I/O error occurs while sending.
+     */
+    synchronized void send(String command) throws IOException {
+        this.bufferedWriter.write(command);
+        this.bufferedWriter.newLine();
+        this.bufferedWriter.flush();
+    }
+
+    /**
+     * Reads the messages sent by the server until the connection is closed, completing the
+     * authentication attempt in progress and recording the latency of every timestamped message.
+     *
+     * @param histogram  The histogram the delivery latencies are recorded in.
+     * @param deliveries The counter of the timestamped messages received.
+     */
+    void listenForMessages(LatencyHistogram histogram, LongAdder deliveries) {
+        try {
+            String message;
+            while ((message = this.bufferedReader.readLine()) != null) {
+                int marker = message.lastIndexOf(TIMESTAMP_MARKER);
+                if (marker >= 0) {
+                    long sentAt = parseTimestamp(message, marker + TIMESTAMP_MARKER.length());
+                    if (sentAt > 0) {
+                        histogram.record((System.nanoTime() - sentAt) / 1000);
+                        deliveries.increment();
+                    }
+                } else if (message.startsWith("[Message Commands]")) {
+                    this.authentication.complete(true);
+                } else if (message.startsWith("Authentication failed")) {
+                    this.authentication.complete(false);
+                }
+            }
+        } catch (IOException ignored) {
+        } finally {
+            this.authentication.complete(false);
+        }
+    }
+
+    /**
+     * Parses the send timestamp that follows the marker of a message.
+     *
+     * @param message The received message.
+     * @param start   The index of the first digit of the timestamp.
+     * @return The send timestamp in nanoseconds, or {@code 0} if it isn't a valid timestamp.
+     */
+    private static long parseTimestamp(String message, int start) {
+        long value = 0;
+        int i = start;
+
+        while (i < message.length() && Character.isDigit(message.charAt(i))) {
+            value = value * 10 + (message.charAt(i++) - '0');
+        }
+
+        return i > start ? value : 0;
+    }
+
+    /**
+     * Closes the connection with the server.
+     */
+    void close() {
+        try {
+            this.socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
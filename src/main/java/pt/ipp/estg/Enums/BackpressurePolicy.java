@@ -0,0 +1,25 @@
+package pt.ipp.estg.Enums;
+
+/**
+ * The {@code BackpressurePolicy} enum represents what the server does with a client that
+ * isn't reading its messages fast enough, once the messages waiting to be written to it
+ * go over the configured high-water mark.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public enum BackpressurePolicy {
+    /**
+     * Discards the oldest chat messages waiting to be written until the client is back under the high-water mark.
+     */
+    DropOldest,
+    /**
+     * Disconnects the client.
+     */
+    Disconnect,
+    /**
+     * Replaces a status message waiting to be written with the newest one of the same kind,
+     * keeping every chat message until the outbound buffer is full.
+     */
+    Coalesce
+}
@@ -0,0 +1,23 @@
+package pt.ipp.estg.Enums;
+
+/**
+ * The {@code FsyncPolicy} enum represents when the audit log forces the written entries
+ * to the storage device, trading durability for throughput.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public enum FsyncPolicy {
+    /**
+     * Forces every batch of entries after writing it; no written entry is lost on a crash.
+     */
+    Batch,
+    /**
+     * Forces the written entries at most once per configured interval; at most one interval of entries is lost on a crash.
+     */
+    Interval,
+    /**
+     * Never forces the written entries, leaving it to the operating system.
+     */
+    Never
+}
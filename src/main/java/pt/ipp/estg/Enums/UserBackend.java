@@ -0,0 +1,19 @@
+package pt.ipp.estg.Enums;
+
+/**
+ * The {@code UserBackend} enum represents where the server keeps the registered users.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public enum UserBackend {
+    /**
+     * Keeps every user on the heap, persisted to {@code users.json} and its write-ahead log.
+     */
+    Heap,
+    /**
+     * Keeps the users in fixed-width records of a memory-mapped file, creating a user object
+     * only when the user signs in.
+     */
+    Mapped
+}
@@ -2,20 +2,59 @@ package pt.ipp.estg.Server;
 
 import pt.ipp.estg.Entities.User;
 import pt.ipp.estg.Enums.Role;
-import pt.ipp.estg.Utils.JSON;
+import pt.ipp.estg.Enums.UserBackend;
+import pt.ipp.estg.Utils.Configuration;
+import pt.ipp.estg.Utils.Resources;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.UUID;
 
 /**
  * The {@code Auth} class provides authentication functionality including user sign-up
  * and sign-in methods for managing user access to the application.
  * It interacts with user entities and role enumeration for user management.
+ * <p>
+ * The users are kept in a {@link UserDirectory}, loaded from {@code users.json} once,
+ * so signing in doesn't read the user file. The {@code users.backend} setting chooses between
+ * keeping them on the heap and keeping them in a memory-mapped file.
  *
  * @author Carlos Leite, Sergio Felix
  * @version 1.0
  */
 public class Auth {
+    /**
+     * The directory of the registered users.
+     */
+    private static final UserDirectory users = openUsers(Resources.getPathFromResources("users.json"));
+
+    /**
+     * Gets the directory of the registered users, loading it on first use.
+     *
+     * @return The directory of the registered users.
+     */
+    static UserDirectory getUsers() {
+        return users;
+    }
+
+    /**
+     * Opens the directory of the configured backend for the specified user file, falling back to
+     * the heap if the memory-mapped files can't be opened.
+     *
+     * @param filePath The path of the user file.
+     * @return The directory of the registered users.
+     */
+    private static UserDirectory openUsers(String filePath) {
+        if (UserBackend.valueOf(Configuration.getString("users.backend", UserBackend.Heap.name())) == UserBackend.Mapped) {
+            try {
+                return new MappedUserDirectory(filePath, Configuration.getBoolean("users.fsync", true));
+            } catch (IOException e) {
+                System.err.println("Couldn't open the mapped user directory, keeping the users on the heap!\n" + e.getMessage());
+            }
+        }
+
+        return new HeapUserDirectory(filePath);
+    }
+
     /**
      * Signs up a new user with the specified username, email, password, and role.
      *
@@ -24,23 +63,13 @@ public class Auth {
      * @param password The password of the new user.
      * @param role     The role of the new user (e.g., Private, Sergeant, Lieutenant, General).
      * @return The newly signed-up user if successful; {@code null} if the email is already in use.
+     * @throws IllegalArgumentException If the username, email or password is longer than the user directory can store.
      */
     public static User signUp(String username, String email, String password, String role) {
-        ArrayList<User> users = JSON.loadUsers();
-
+        users.checkFields(username, email, password);
         User user = new User(UUID.randomUUID(), username, email, password, Role.valueOf(role));
 
-        if (!users.isEmpty()) {
-            for (User currentUser : users) {
-                if (currentUser.getEmail().equals(user.getEmail())) {
-                    return null;
-                }
-            }
-        }
-
-        JSON.saveUser(user);
-
-        return user;
+        return users.add(user) ? user : null;
     }
 
     /**
@@ -51,16 +80,20 @@ public class Auth {
      * @return The signed-in user if successful; {@code null} if the credentials are invalid.
      */
     public static User signIn(String email, String password) {
-        ArrayList<User> users = JSON.loadUsers();
-
-        if (users.isEmpty()) return null;
+        return signIn(users, email, password);
+    }
 
-        for (User currentUser : users) {
-            if (currentUser.getEmail().equals(email) && currentUser.getPassword().equals(password)) {
-                return currentUser;
-            }
-        }
+    /**
+     * Signs in a user of the specified directory with the specified email and password.
+     *
+     * @param directory The directory of the users.
+     * @param email     The email address of the user.
+     * @param password  The password of the user.
+     * @return The signed-in user if successful; {@code null} if the credentials are invalid.
+     */
+    static User signIn(UserDirectory directory, String email, String password) {
+        User user = directory.findByEmail(email);
 
-        return null;
+        return user != null && user.getPassword().equals(password) ? user : null;
     }
 }
@@ -0,0 +1,44 @@
+package pt.ipp.estg.Server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code BackpressureStats} class keeps the counters of how often the slow-consumer
+ * protection of the outbound queues fires, across every connected client.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class BackpressureStats {
+    /**
+     * The number of messages queued while a client was over the high-water mark.
+     */
+    static final LongAdder highWaterMarkReached = new LongAdder();
+    /**
+     * The number of chat messages discarded by the drop-oldest policy.
+     */
+    static final LongAdder droppedMessages = new LongAdder();
+    /**
+     * The number of status messages replaced by a newer one by the coalesce policy.
+     */
+    static final LongAdder coalescedMessages = new LongAdder();
+    /**
+     * The number of clients disconnected for not reading their messages.
+     */
+    static final LongAdder disconnectedClients = new LongAdder();
+
+    /**
+     * Prevents the instantiation of this class.
+     */
+    private BackpressureStats() {
+    }
+
+    /**
+     * Gets a summary of the counters.
+     *
+     * @return The counters formatted as a single line.
+     */
+    static String summary() {
+        return "High-water mark reached: %s, Dropped: %s, Coalesced: %s, Disconnected: %s".formatted(highWaterMarkReached.sum(), droppedMessages.sum(), coalescedMessages.sum(), disconnectedClients.sum());
+    }
+}
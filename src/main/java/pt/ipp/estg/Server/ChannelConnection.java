@@ -0,0 +1,351 @@
+package pt.ipp.estg.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The {@code ChannelConnection} class is a {@link Connection} backed by a non-blocking
+ * {@link SocketChannel} registered in one of the {@link SelectorServer} event loops.
+ * Outgoing messages are added to a bounded queue as read-only views of their encoded bytes,
+ * shared with every other recipient, and written by the event loop when the channel is writable.
+ * Incoming bytes are split into lines using the same line-based protocol as the blocking transport.
+ * <p>
+ * The received lines are handled in order by a worker of the connection rather than by the event loop,
+ * so a command waiting for the disk only delays its own client. While too many lines are waiting to be
+ * handled, the channel isn't read, so a client can't queue commands faster than they are handled.
+ * <p>
+ * If the client isn't reading fast enough, the backpressure policy of the queue decides which
+ * messages are discarded and whether the connection is closed.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+class ChannelConnection implements Connection {
+    /**
+     * The maximum length, in bytes, accepted for a single line sent by the client.
+     */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    /**
+     * The number of received lines waiting to be handled above which the channel is no longer read.
+     */
+    private static final int MAX_QUEUED_COMMANDS = 64;
+    /**
+     * The channel associated with the connected client.
+     */
+    private final SocketChannel channel;
+    /**
+     * The event loop that owns the channel.
+     */
+    private final SelectorServer.EventLoop eventLoop;
+    /**
+     * The formatted address of the connected client.
+     */
+    private final String address;
+    /**
+     * The messages waiting to be written to the channel.
+     */
+    private final OutboundQueue outbound;
+    /**
+     * The executor running the worker that handles the received lines and the disconnection.
+     */
+    private final Executor commandExecutor;
+    /**
+     * The tasks waiting to run on the worker of the connection, in the order they were submitted.
+     */
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    /**
+     * Whether the worker of the connection is scheduled or running.
+     */
+    private final AtomicBoolean commandsScheduled = new AtomicBoolean(false);
+    /**
+     * The number of received lines waiting to be handled.
+     */
+    private final AtomicInteger queuedCommands = new AtomicInteger(0);
+    /**
+     * Whether the channel stopped being read because too many lines are waiting to be handled.
+     */
+    private final AtomicBoolean readPaused = new AtomicBoolean(false);
+    /**
+     * The buffer of the message currently being written, or {@code null} if there is none.
+     */
+    private ByteBuffer pending;
+    /**
+     * Whether the event loop was already asked to watch the channel for writability.
+     */
+    private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+    /**
+     * Whether the connection has been closed.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    /**
+     * Whether the client handler has already been disconnected.
+     */
+    private final AtomicBoolean disconnected = new AtomicBoolean(false);
+    /**
+     * The buffer used for reading bytes from the channel.
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+    /**
+     * The bytes of the line currently being received.
+     */
+    private byte[] line = new byte[256];
+    /**
+     * The number of bytes of the line currently being received.
+     */
+    private int lineLength = 0;
+    /**
+     * The selection key of the channel in the event loop selector.
+     */
+    private SelectionKey key;
+
+    /**
+     * Constructs a new {@code ChannelConnection} for the specified channel and event loop.
+     *
+     * @param channel         The client channel, already configured as non-blocking.
+     * @param eventLoop       The event loop that owns the channel.
+     * @param outbound        The queue of messages waiting to be written to the client.
+     * @param commandExecutor The executor running the worker that handles the received lines.
+     * @throws IOException If an I/O error occurs while getting the client address.
+     */
+    ChannelConnection(SocketChannel channel, SelectorServer.EventLoop eventLoop, OutboundQueue outbound, Executor commandExecutor) throws IOException {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.outbound = outbound;
+        this.commandExecutor = commandExecutor;
+        this.address = channel.socket().getInetAddress().getHostAddress() + ":" + channel.socket().getPort();
+    }
+
+    /**
+     * Sets the selection key of the channel once it has been registered in the event loop.
+     *
+     * @param key The selection key of the channel.
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Gets the channel associated with the connected client.
+     *
+     * @return The client channel.
+     */
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Queues a message to be written to the client and asks the event loop to flush it.
+     * Messages sent after the connection was closed are discarded, and the client is
+     * disconnected if the backpressure policy says so.
+     *
+     * @param message The encoded message to send.
+     */
+    @Override
+    public void send(EncodedMessage message) {
+        if (this.closed.get()) return;
+
+        if (!this.outbound.offer(message)) {
+            System.err.println("Client not reading, closing connection " + this.address + "!");
+            closeQuietly();
+            this.eventLoop.execute(this::disconnect);
+            return;
+        }
+
+        if (this.writeRequested.compareAndSet(false, true)) {
+            this.eventLoop.execute(this::enableWrite);
+        }
+    }
+
+    /**
+     * Disconnects the client handler attached to the channel, only once even if both the
+     * backpressure policy and the event loop detect the disconnection. The disconnection is
+     * handled by the worker of the connection, after the lines received before it.
+     */
+    void disconnect() {
+        if (this.key != null && this.disconnected.compareAndSet(false, true)) {
+            Server.ClientHandler handler = (Server.ClientHandler) this.key.attachment();
+            runInOrder(handler::handleDisconnection);
+        }
+    }
+
+    /**
+     * Runs a task on the worker of the connection, after the tasks submitted before it.
+     *
+     * @param task The task to run.
+     */
+    private void runInOrder(Runnable task) {
+        this.commands.add(task);
+        if (this.commandsScheduled.compareAndSet(false, true)) {
+            this.commandExecutor.execute(this::runCommands);
+        }
+    }
+
+    /**
+     * Runs the tasks waiting for the worker of the connection, one at a time, until none is left.
+     * A failing task is reported and doesn't stop the tasks after it.
+     */
+    private void runCommands() {
+        do {
+            Runnable task;
+            while ((task = this.commands.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("An unexpected error has occurred while handling a command from " + this.address + "!\n" + e.getMessage());
+                }
+            }
+            this.commandsScheduled.set(false);
+        } while (!this.commands.isEmpty() && this.commandsScheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * Hands a received line to the worker of the connection, and stops reading the channel while
+     * too many lines are waiting to be handled. Must run on the event loop thread.
+     *
+     * @param lineConsumer The consumer of the received lines.
+     * @param line         The received line.
+     */
+    private void submitLine(Consumer<String> lineConsumer, String line) {
+        this.queuedCommands.incrementAndGet();
+        runInOrder(() -> {
+            try {
+                lineConsumer.accept(line);
+            } finally {
+                if (this.queuedCommands.decrementAndGet() == 0 && this.readPaused.compareAndSet(true, false)) {
+                    this.eventLoop.execute(this::enableRead);
+                }
+            }
+        });
+
+        if (this.queuedCommands.get() >= MAX_QUEUED_COMMANDS && this.readPaused.compareAndSet(false, true)) {
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+            if (this.queuedCommands.get() == 0 && this.readPaused.compareAndSet(true, false)) enableRead();
+        }
+    }
+
+    /**
+     * Adds the read interest to the selection key again. Must run on the event loop thread.
+     */
+    private void enableRead() {
+        if (this.key != null && this.key.isValid()) {
+            this.key.interestOps(this.key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Closes the connection, ignoring any I/O error, so no more messages are queued for the client.
+     */
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Adds the write interest to the selection key. Must run on the event loop thread.
+     */
+    private void enableWrite() {
+        if (this.key != null && this.key.isValid()) {
+            this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Writes as many queued buffers as the channel accepts without blocking.
+     * Removes the write interest once the queue is empty. Must run on the event loop thread.
+     *
+     * @throws IOException If an I/O error occurs while writing to the channel.
+     */
+    void flush() throws IOException {
+        while (true) {
+            if (this.pending == null) {
+                EncodedMessage message = this.outbound.poll();
+                if (message == null) break;
+                this.pending = message.buffer();
+            }
+            this.channel.write(this.pending);
+            if (this.pending.hasRemaining()) return;
+            this.pending = null;
+        }
+
+        this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+        this.writeRequested.set(false);
+
+        if (!this.outbound.isEmpty() && this.writeRequested.compareAndSet(false, true)) {
+            enableWrite();
+        }
+    }
+
+    /**
+     * Reads up to one buffer of bytes from the channel and passes every complete line to the consumer,
+     * which runs on the worker of the connection. Reading a single buffer for each readiness event lets
+     * the event loop flush the replies in between, so a client sending a burst of commands doesn't
+     * overflow its own outbound queue. Must run on the event loop thread.
+     *
+     * @param lineConsumer The consumer of the received lines.
+     * @return {@code false} if the client closed the connection; {@code true} otherwise.
+     * @throws IOException If an I/O error occurs or the client sends a line that is too long.
+     */
+    boolean read(Consumer<String> lineConsumer) throws IOException {
+        int bytesRead = this.channel.read(this.readBuffer);
+
+        this.readBuffer.flip();
+        while (this.readBuffer.hasRemaining()) {
+            byte b = this.readBuffer.get();
+            if (b == '\n') {
+                int length = this.lineLength > 0 && this.line[this.lineLength - 1] == '\r' ? this.lineLength - 1 : this.lineLength;
+                this.lineLength = 0;
+                submitLine(lineConsumer, new String(this.line, 0, length, StandardCharsets.UTF_8));
+                if (this.closed.get()) return false;
+            } else {
+                appendToLine(b);
+            }
+        }
+        this.readBuffer.clear();
+
+        return bytesRead != -1;
+    }
+
+    /**
+     * Appends a byte to the line currently being received, growing the line buffer if needed.
+     *
+     * @param b The byte to append.
+     * @throws IOException If the line exceeds the maximum line length.
+     */
+    private void appendToLine(byte b) throws IOException {
+        if (this.lineLength == this.line.length) {
+            if (this.line.length >= MAX_LINE_LENGTH) throw new IOException("Line too long from " + this.address);
+            this.line = Arrays.copyOf(this.line, Math.min(this.line.length * 2, MAX_LINE_LENGTH));
+        }
+        this.line[this.lineLength++] = b;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.closed.compareAndSet(false, true)) return;
+        if (this.key != null) this.key.cancel();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,73 @@
+package pt.ipp.estg.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The {@code CommandRegistry} class maps the command names sent by the clients to the actions that
+ * handle them. The command is found with a single hash lookup on the first token of the line, so the
+ * cost of dispatching doesn't depend on the number of commands and doesn't rely on the order in which
+ * they are checked. New commands are added by registering them, without changing the dispatching code.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class CommandRegistry {
+    /**
+     * The registered commands by name.
+     */
+    private final Map<String, Command> commands = new HashMap<>();
+
+    /**
+     * Registers a command.
+     *
+     * @param name      The command name, including the leading slash (e.g., "/whisper").
+     * @param arguments The number of tokens of the command, including its name; the last token holds the rest of the line.
+     * @param action    The action that handles the command, given the client handler and the tokens.
+     * @return This registry, for registering more commands.
+     */
+    CommandRegistry register(String name, int arguments, BiConsumer<Server.ClientHandler, String[]> action) {
+        this.commands.put(name, new Command(arguments, action));
+        return this;
+    }
+
+    /**
+     * Finds the command of a line sent by a client.
+     *
+     * @param line The line sent by the client.
+     * @return The command, or {@code null} if the line doesn't start with a registered command name.
+     */
+    Command lookup(String line) {
+        return this.commands.get(CommandTokenizer.commandName(line));
+    }
+
+    /**
+     * The {@code Command} record represents a registered command.
+     *
+     * @param arguments The number of tokens of the command, including its name.
+     * @param action    The action that handles the command.
+     */
+    record Command(int arguments, BiConsumer<Server.ClientHandler, String[]> action) {
+        /**
+         * Splits a line into the tokens of the command.
+         *
+         * @param line The line sent by the client.
+         * @return The tokens, or {@code null} if the line doesn't have the expected number of tokens.
+         */
+        String[] parse(String line) {
+            String[] tokens = CommandTokenizer.tokenize(line, this.arguments);
+            return tokens.length == this.arguments ? tokens : null;
+        }
+
+        /**
+         * Runs the action of the command.
+         *
+         * @param handler The client handler that received the command.
+         * @param tokens  The tokens of the command.
+         */
+        void execute(Server.ClientHandler handler, String[] tokens) {
+            this.action.accept(handler, tokens);
+        }
+    }
+}
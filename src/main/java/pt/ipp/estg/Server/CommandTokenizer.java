@@ -0,0 +1,69 @@
+package pt.ipp.estg.Server;
+
+import java.util.Arrays;
+
+/**
+ * The {@code CommandTokenizer} class splits the lines sent by the clients into the command name
+ * and its arguments. It gives the same result as {@code line.split("\\s+", limit)} but scans the
+ * line by hand, without compiling or running a regular expression, and allocates only the tokens.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class CommandTokenizer {
+    /**
+     * Prevents the instantiation of the class.
+     */
+    private CommandTokenizer() {
+    }
+
+    /**
+     * Gets the command name, the text before the first whitespace of the line.
+     *
+     * @param line The line sent by the client.
+     * @return The command name, empty if the line starts with whitespace.
+     */
+    static String commandName(String line) {
+        int end = 0;
+        while (end < line.length() && !isWhitespace(line.charAt(end))) end++;
+        return line.substring(0, end);
+    }
+
+    /**
+     * Splits a line on runs of whitespace into at most {@code limit} tokens,
+     * the last token holding the rest of the line as it was sent.
+     *
+     * @param line  The line sent by the client.
+     * @param limit The maximum number of tokens, including the command name.
+     * @return The tokens of the line.
+     */
+    static String[] tokenize(String line, int limit) {
+        String[] tokens = new String[limit];
+        int length = line.length();
+        int count = 0;
+        int start = 0;
+
+        while (count < limit - 1) {
+            int end = start;
+            while (end < length && !isWhitespace(line.charAt(end))) end++;
+            if (end == length) break;
+
+            tokens[count++] = line.substring(start, end);
+            start = end;
+            while (start < length && isWhitespace(line.charAt(start))) start++;
+        }
+        tokens[count++] = line.substring(start);
+
+        return count == limit ? tokens : Arrays.copyOf(tokens, count);
+    }
+
+    /**
+     * Checks if a character is whitespace, using the same characters as {@code \s} in a regular expression.
+     *
+     * @param c The character to check.
+     * @return {@code true} if the character is whitespace, {@code false} otherwise.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -4,11 +4,24 @@ package pt.ipp.estg.Server;
  * The {@code CommandsMenu} class provides static methods to generate command menus
  * for different categories, such as authentication, messaging, offensive actions, and management.
  * These commands can be used in an application to perform various actions.
+ * <p>
+ * The menus sent to the clients never change, so they are encoded once and the same
+ * bytes are shared by every client connection.
  *
  * @author Carlos Leite, Sergio Felix
  * @version 1.0
  */
 public class CommandsMenu {
+    /**
+     * The authentication commands menu, encoded once for every client.
+     */
+    static final EncodedMessage AUTHENTICATION_MENU = EncodedMessage.of(AuthenticationCommands());
+    /**
+     * The message, offensive, management and session commands menus, encoded once
+     * for every client and sent as a single message.
+     */
+    static final EncodedMessage ACTION_MENU = EncodedMessage.of(String.join(System.lineSeparator(), MessageCommands(), OffensiveCommands(), ManagementCommands(), SessionCommands()));
+
     /**
      * Generates a command menu for authentication-related commands.
      *
@@ -66,6 +79,22 @@ public class CommandsMenu {
                 /reject-request {id}
                 /promote {username} {role (Private, Sergeant, Lieutenant, General)}
                 /demote {username} {role (Private, Sergeant, Lieutenant, General)}
+                /search-logs {filters (ip=, type=, user=, from=dd/MM/yyyy-HH:mm, to=dd/MM/yyyy-HH:mm, limit=)}
+                /log-report
+                """;
+    }
+
+    /**
+     * Generates a command menu for session-related commands.
+     *
+     * @return A string containing session-related commands.
+     */
+    public static String SessionCommands() {
+        return """
+                [Session Commands]
+                /help
+                /quiet
+                /verbose
                 """;
     }
 }
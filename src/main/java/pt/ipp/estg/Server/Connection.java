@@ -0,0 +1,44 @@
+package pt.ipp.estg.Server;
+
+import java.io.IOException;
+
+/**
+ * The {@code Connection} interface represents the outbound side of a client connection,
+ * independently of the transport used to serve it (blocking sockets or NIO channels).
+ * It allows the {@code ClientHandler} to send lines to a client and to close the connection.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+interface Connection {
+    /**
+     * Gets the address of the connected client in the "host:port" format.
+     *
+     * @return The formatted client address.
+     */
+    String getAddress();
+
+    /**
+     * Sends a message to the connected client followed by a line separator.
+     *
+     * @param message The message to send.
+     */
+    default void send(String message) {
+        send(EncodedMessage.of(message));
+    }
+
+    /**
+     * Sends an already encoded message to the connected client. The same encoded message
+     * may be shared by many connections, so implementations must not modify it.
+     *
+     * @param message The encoded message to send.
+     */
+    void send(EncodedMessage message);
+
+    /**
+     * Closes the connection with the client.
+     *
+     * @throws IOException If an I/O error occurs while closing the connection.
+     */
+    void close() throws IOException;
+}
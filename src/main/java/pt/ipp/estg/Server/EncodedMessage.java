@@ -0,0 +1,143 @@
+package pt.ipp.estg.Server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code EncodedMessage} class represents a message line already rendered and encoded in UTF-8,
+ * including its line separator. A message sent to many clients is encoded once and the same
+ * read-only bytes are shared by every recipient connection, so the cost of a broadcast depends
+ * on the number of bytes written and not on formatting and encoding the message for each recipient.
+ * <p>
+ * Chat messages may be discarded and status messages replaced by newer ones when a client
+ * falls behind; replies to the client's own commands are always delivered.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class EncodedMessage {
+    /**
+     * The line separator appended to every message.
+     */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    /**
+     * The encoded bytes of the message, never modified after construction.
+     */
+    private final byte[] bytes;
+    /**
+     * The read-only view of the encoded bytes shared by every recipient.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Whether the message is a chat message that may be discarded for a slow client.
+     */
+    private final boolean chat;
+    /**
+     * The kind of status the message reports, or {@code null} if it isn't a status message.
+     */
+    private final String statusKey;
+
+    /**
+     * Constructs a new {@code EncodedMessage} with the specified encoded bytes.
+     *
+     * @param bytes     The encoded bytes of the message.
+     * @param chat      Whether the message is a chat message.
+     * @param statusKey The kind of status the message reports, or {@code null}.
+     */
+    private EncodedMessage(byte[] bytes, boolean chat, String statusKey) {
+        this.bytes = bytes;
+        this.buffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        this.chat = chat;
+        this.statusKey = statusKey;
+    }
+
+    /**
+     * Encodes a reply message in UTF-8, followed by a line separator.
+     *
+     * @param message The message to encode.
+     * @return The encoded message.
+     */
+    static EncodedMessage of(String message) {
+        return new EncodedMessage(encode(message), false, null);
+    }
+
+    /**
+     * Encodes a chat message in UTF-8, followed by a line separator.
+     *
+     * @param message The message to encode.
+     * @return The encoded chat message.
+     */
+    static EncodedMessage chat(String message) {
+        return new EncodedMessage(encode(message), true, null);
+    }
+
+    /**
+     * Encodes a status message in UTF-8, followed by a line separator.
+     *
+     * @param statusKey The kind of status the message reports; a newer status of the same kind supersedes it.
+     * @param message   The message to encode.
+     * @return The encoded status message.
+     */
+    static EncodedMessage status(String statusKey, String message) {
+        return new EncodedMessage(encode(message), false, statusKey);
+    }
+
+    /**
+     * Encodes a message in UTF-8, followed by a line separator.
+     *
+     * @param message The message to encode.
+     * @return The encoded bytes.
+     */
+    private static byte[] encode(String message) {
+        return (message + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks if the message is a chat message that may be discarded for a slow client.
+     *
+     * @return {@code true} if the message is a chat message, {@code false} otherwise.
+     */
+    boolean isChat() {
+        return this.chat;
+    }
+
+    /**
+     * Gets the kind of status the message reports.
+     *
+     * @return The status kind, or {@code null} if it isn't a status message.
+     */
+    String getStatusKey() {
+        return this.statusKey;
+    }
+
+    /**
+     * Gets a read-only buffer over the encoded bytes, with its own position and limit,
+     * so each recipient can track how much of the message it has already written.
+     *
+     * @return A read-only buffer over the encoded bytes.
+     */
+    ByteBuffer buffer() {
+        return this.buffer.duplicate();
+    }
+
+    /**
+     * Gets the number of encoded bytes of the message.
+     *
+     * @return The length of the message in bytes.
+     */
+    int length() {
+        return this.bytes.length;
+    }
+
+    /**
+     * Writes the encoded bytes to an output stream without copying them.
+     *
+     * @param outputStream The output stream to write to.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(this.bytes);
+    }
+}
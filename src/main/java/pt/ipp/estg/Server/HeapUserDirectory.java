@@ -0,0 +1,102 @@
+package pt.ipp.estg.Server;
+
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+import pt.ipp.estg.Utils.Configuration;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code HeapUserDirectory} class is a {@link UserDirectory} that keeps the registered users on the heap,
+ * indexed by email and by username, so signing in is a hash lookup instead of reading and scanning the user
+ * file. The users are recovered from the {@link UserStore} once, when the directory is created, and every
+ * new user and role change is written through to its write-ahead log.
+ * <p>
+ * Adding a user claims its email with a single atomic insertion, so two concurrent sign-ups with the same
+ * email can't both succeed, and is undone if the user can't be written to the log.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class HeapUserDirectory implements UserDirectory {
+    /**
+     * The store the users are persisted to.
+     */
+    private final UserStore store;
+    /**
+     * The users by email.
+     */
+    private final ConcurrentHashMap<String, User> byEmail = new ConcurrentHashMap<>();
+    /**
+     * The users by username; with duplicate usernames, the first user registered.
+     */
+    private final ConcurrentHashMap<String, User> byUsername = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code HeapUserDirectory} with the users recovered from the specified file and its
+     * write-ahead log, configured with the {@code users.*} settings.
+     *
+     * @param filePath The path of the user file.
+     */
+    HeapUserDirectory(String filePath) {
+        this.store = new UserStore(filePath, Configuration.getInt("users.snapshot-interval", 1000), Configuration.getBoolean("users.fsync", true));
+
+        try {
+            for (User user : this.store.recover(this.byEmail::values)) {
+                this.byEmail.putIfAbsent(user.getEmail(), user);
+                this.byUsername.putIfAbsent(user.getUsername(), user);
+            }
+        } catch (IOException e) {
+            System.err.println("Couldn't recover the users, changes won't be persisted!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public User findByEmail(String email) {
+        return this.byEmail.get(email);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public User findByUsername(String username) {
+        return this.byUsername.get(username);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(User user) {
+        if (this.byEmail.putIfAbsent(user.getEmail(), user) != null) return false;
+        this.byUsername.putIfAbsent(user.getUsername(), user);
+
+        if (!this.store.created(user)) {
+            this.byUsername.remove(user.getUsername(), user);
+            this.byEmail.remove(user.getEmail(), user);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void changeRole(User user, Role role) {
+        this.store.changeRole(user, role);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.byEmail.size();
+    }
+}
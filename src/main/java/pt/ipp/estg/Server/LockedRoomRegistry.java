@@ -0,0 +1,170 @@
+package pt.ipp.estg.Server;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The {@code LockedRoomRegistry} class is a {@link RoomRegistry} that applies every operation on the
+ * calling thread. The rooms are found in a concurrent directory by name, and each room guards its own
+ * members, so operations on different rooms never wait for each other.
+ * <p>
+ * The members of a room are a copy-on-write array: sending a message to a room reads the current
+ * array without locking, while joining and leaving copy it while holding the room. A room is removed
+ * from the directory when its last member leaves, and marked as closed, so a client joining it at the
+ * same time is told it doesn't exist rather than joining a room nobody can find.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class LockedRoomRegistry implements RoomRegistry {
+    /**
+     * The rooms by name.
+     */
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void create(String name, Server.ClientHandler creator, Consumer<Boolean> done) {
+        done.accept(this.rooms.putIfAbsent(name, new Room(name, creator)) == null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void join(String name, Server.ClientHandler member, Consumer<Outcome> done) {
+        Room room = this.rooms.get(name);
+        done.accept(room == null ? Outcome.NoRoom : room.join(member));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void leave(String name, Server.ClientHandler member, Consumer<Outcome> done) {
+        Room room = this.rooms.get(name);
+        done.accept(room == null ? Outcome.NoRoom : room.leave(member));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The members are read without locking, so the message is sent to the members at the time it is sent.
+     */
+    @Override
+    public void send(String name, Server.ClientHandler sender, EncodedMessage message, Consumer<Outcome> done) {
+        Room room = this.rooms.get(name);
+        if (room == null) {
+            done.accept(Outcome.NoRoom);
+            return;
+        }
+
+        Server.ClientHandler[] members = room.members;
+        if (room.indexOf(members, sender) < 0) {
+            done.accept(Outcome.NotMember);
+            return;
+        }
+
+        for (Server.ClientHandler member : members) {
+            if (member != sender) member.getConnection().send(message);
+        }
+        done.accept(Outcome.Done);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sizes(Consumer<Map<String, Integer>> done) {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (Room room : this.rooms.values()) sizes.put(room.name, room.members.length);
+        done.accept(sizes);
+    }
+
+    /**
+     * The {@code Room} class represents a chat room and its members.
+     */
+    private final class Room {
+        /**
+         * The name of the room.
+         */
+        private final String name;
+        /**
+         * The members of the room, replaced by a new array whenever a client joins or leaves.
+         */
+        private volatile Server.ClientHandler[] members;
+        /**
+         * Whether the room was removed from the directory after its last member left.
+         */
+        private boolean closed = false;
+
+        /**
+         * Constructs a new {@code Room} with the specified first member.
+         *
+         * @param name    The name of the room.
+         * @param creator The first member of the room.
+         */
+        Room(String name, Server.ClientHandler creator) {
+            this.name = name;
+            this.members = new Server.ClientHandler[]{creator};
+        }
+
+        /**
+         * Adds a client to the room.
+         *
+         * @param member The client joining the room.
+         * @return The outcome: {@code Done}, {@code NoRoom} or {@code AlreadyMember}.
+         */
+        synchronized Outcome join(Server.ClientHandler member) {
+            if (this.closed) return Outcome.NoRoom;
+            if (indexOf(this.members, member) >= 0) return Outcome.AlreadyMember;
+
+            Server.ClientHandler[] joined = Arrays.copyOf(this.members, this.members.length + 1);
+            joined[this.members.length] = member;
+            this.members = joined;
+            return Outcome.Done;
+        }
+
+        /**
+         * Removes a client from the room, closing and removing the room once it is empty.
+         *
+         * @param member The client leaving the room.
+         * @return The outcome: {@code Done}, {@code NoRoom} or {@code NotMember}.
+         */
+        synchronized Outcome leave(Server.ClientHandler member) {
+            if (this.closed) return Outcome.NoRoom;
+
+            int index = indexOf(this.members, member);
+            if (index < 0) return Outcome.NotMember;
+
+            Server.ClientHandler[] left = new Server.ClientHandler[this.members.length - 1];
+            System.arraycopy(this.members, 0, left, 0, index);
+            System.arraycopy(this.members, index + 1, left, index, left.length - index);
+            this.members = left;
+
+            if (left.length == 0) {
+                this.closed = true;
+                rooms.remove(this.name, this);
+            }
+            return Outcome.Done;
+        }
+
+        /**
+         * Finds a client in members of the room.
+         *
+         * @param members The members of the room.
+         * @param member  The client.
+         * @return The index of the client, or {@code -1} if it isn't a member.
+         */
+        private int indexOf(Server.ClientHandler[] members, Server.ClientHandler member) {
+            for (int i = 0; i < members.length; i++) {
+                if (members[i] == member) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package pt.ipp.estg.Server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * The {@code MailboxStore} class keeps the messages sent to offline users until they sign in. Each mailbox
+ * holds its most recent messages in memory; once the in-memory tail reaches its threshold, it is appended
+ * to the mailbox file of the user, one line per message, so the heap holds a bounded number of messages
+ * per user. The tails are written to the files when the server stops, and the mailbox files are found
+ * again when it starts.
+ * <p>
+ * A mailbox holds at most a quota of messages, and messages older than the time to live are discarded:
+ * when the mailbox is drained, and by a periodic sweep that drops expired tails and deletes the files
+ * whose messages have all expired.
+ * <p>
+ * The mailboxes are kept in a concurrent map and each one is only changed while holding its entry,
+ * so depositing and draining the mailboxes of different users never wait for each other. A full tail
+ * is moved out of the entry into the pending batches of the mailbox and written to the file after the
+ * entry is released, under a lock of the file shared by a fixed set of users, so no disk write holds
+ * the map. Draining takes the same lock, so a new mailbox of the user never writes to the file before
+ * the old one is renamed.
+ * <p>
+ * A mailbox file being drained is renamed first; if the server stops or the file can't be read before
+ * it is deleted, its messages are merged back into the mailbox of the user when the server starts,
+ * so they are delivered at least once.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class MailboxStore {
+    /**
+     * The extension of the mailbox files.
+     */
+    private static final String EXTENSION = ".mbox";
+    /**
+     * The infix of the mailbox files being drained, followed by a unique number.
+     */
+    private static final String DRAINING = ".draining.";
+    /**
+     * The number of locks shared by the mailbox files.
+     */
+    private static final int FILE_LOCKS = 64;
+    /**
+     * The directory of the mailbox files.
+     */
+    private final Path directory;
+    /**
+     * The number of messages kept in memory by each mailbox before they are written to its file.
+     */
+    private final int memoryTail;
+    /**
+     * The maximum number of messages of each mailbox.
+     */
+    private final int quota;
+    /**
+     * The time after which a message is discarded, in milliseconds, or {@code 0} to keep the messages.
+     */
+    private final long timeToLive;
+    /**
+     * The mailboxes by username.
+     */
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    /**
+     * The locks held while writing, renaming or deleting a mailbox file, chosen by the hash of the username.
+     */
+    private final Object[] fileLocks = new Object[FILE_LOCKS];
+
+    /**
+     * Constructs a new {@code MailboxStore} in the specified directory, finding the mailbox files
+     * already in it, and starts the periodic sweep of the expired messages.
+     *
+     * @param directory  The directory of the mailbox files.
+     * @param memoryTail The number of messages kept in memory by each mailbox before they are written to its file.
+     * @param quota      The maximum number of messages of each mailbox.
+     * @param timeToLive The time after which a message is discarded, in milliseconds, or {@code 0} to keep the messages.
+     */
+    MailboxStore(Path directory, int memoryTail, int quota, long timeToLive) {
+        this.directory = directory;
+        this.memoryTail = Math.max(1, memoryTail);
+        this.quota = Math.max(1, quota);
+        this.timeToLive = timeToLive;
+        for (int i = 0; i < this.fileLocks.length; i++) this.fileLocks[i] = new Object();
+
+        recoverDraining();
+        recover();
+        if (timeToLive <= 0) return;
+
+        Timer sweepTimer = new Timer("mailbox-sweeper", true);
+        sweepTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, Math.min(timeToLive, 3600000), Math.min(timeToLive, 3600000));
+    }
+
+    /**
+     * Deposits a message in the mailbox of a user, writing the in-memory tail to the mailbox file
+     * if it reached its threshold. The tail is written after the entry of the mailbox is released.
+     *
+     * @param username The username of the recipient.
+     * @param message  The message.
+     * @return {@code true} if the message was stored, {@code false} if the mailbox is full.
+     */
+    boolean deposit(String username, String message) {
+        boolean[] stored = {false};
+        Mailbox[] spilling = {null};
+
+        this.mailboxes.compute(username, (key, mailbox) -> {
+            if (mailbox == null) mailbox = new Mailbox(fileOf(key));
+            if (mailbox.size() >= this.quota) return mailbox;
+
+            mailbox.tail.add(new Letter(System.currentTimeMillis(), message));
+            stored[0] = true;
+            if (mailbox.tail.size() >= this.memoryTail && mailbox.moveTail()) spilling[0] = mailbox;
+            return mailbox;
+        });
+
+        if (spilling[0] != null) write(username, spilling[0]);
+        return stored[0];
+    }
+
+    /**
+     * Removes the mailbox of a user and delivers its messages that haven't expired, oldest first,
+     * in batches: first the messages of the mailbox file, read a batch at a time, then the in-memory tail.
+     * The mailbox is detached before it is read, so messages deposited meanwhile go to a new mailbox.
+     * If the mailbox file can't be read, it is kept and merged back into the mailbox when the server starts.
+     *
+     * @param username  The username of the recipient.
+     * @param batchSize The maximum number of messages of each batch.
+     * @param batch     The action performed with each batch of messages.
+     */
+    void drain(String username, int batchSize, Consumer<List<String>> batch) {
+        Mailbox mailbox;
+        Path detachedFile;
+
+        synchronized (fileLockOf(username)) {
+            mailbox = this.mailboxes.remove(username);
+            if (mailbox == null) return;
+
+            mailbox.writePending();
+            detachedFile = mailbox.detach();
+        }
+
+        long oldest = oldestKept();
+        List<String> messages = new ArrayList<>(batchSize);
+
+        if (detachedFile != null) {
+            boolean read = false;
+            try (BufferedReader reader = Files.newBufferedReader(detachedFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Letter letter = Letter.parse(line);
+                    if (letter == null || letter.timestamp() < oldest) continue;
+
+                    messages = addMessage(messages, letter.message(), batchSize, batch);
+                }
+                read = true;
+            } catch (IOException e) {
+                System.err.println("Couldn't read the mailbox of " + username + ", it is kept until the server restarts!\n" + e.getMessage());
+            }
+
+            if (read) {
+                try {
+                    Files.deleteIfExists(detachedFile);
+                } catch (IOException e) {
+                    System.err.println("Couldn't delete the mailbox of " + username + "!\n" + e.getMessage());
+                }
+            }
+        }
+
+        for (List<Letter> pending : mailbox.pending) {
+            for (Letter letter : pending) {
+                if (letter.timestamp() >= oldest) messages = addMessage(messages, letter.message(), batchSize, batch);
+            }
+        }
+
+        for (Letter letter : mailbox.tail) {
+            if (letter.timestamp() >= oldest) messages = addMessage(messages, letter.message(), batchSize, batch);
+        }
+
+        if (!messages.isEmpty()) batch.accept(messages);
+    }
+
+    /**
+     * Adds a message to the batch being delivered, delivering the batch once it is full.
+     *
+     * @param messages  The messages of the batch being delivered.
+     * @param message   The message.
+     * @param batchSize The maximum number of messages of each batch.
+     * @param batch     The action performed with each batch of messages.
+     * @return The batch to add the next message to.
+     */
+    private static List<String> addMessage(List<String> messages, String message, int batchSize, Consumer<List<String>> batch) {
+        messages.add(message);
+        if (messages.size() < batchSize) return messages;
+
+        batch.accept(messages);
+        return new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Writes the in-memory tails of every mailbox to the mailbox files, so they aren't lost when the server stops.
+     */
+    void spillAll() {
+        for (String username : this.mailboxes.keySet()) {
+            Mailbox[] spilling = {null};
+            this.mailboxes.computeIfPresent(username, (key, mailbox) -> {
+                if (mailbox.moveTail()) spilling[0] = mailbox;
+                return mailbox;
+            });
+
+            if (spilling[0] != null) write(username, spilling[0]);
+        }
+    }
+
+    /**
+     * Discards the expired messages of the in-memory tails, and deletes the mailbox files whose
+     * messages have all expired. Mailboxes left empty are removed.
+     */
+    private void sweep() {
+        long oldest = oldestKept();
+
+        for (String username : this.mailboxes.keySet()) {
+            synchronized (fileLockOf(username)) {
+                Path[] expiredFile = {null};
+                this.mailboxes.computeIfPresent(username, (key, mailbox) -> {
+                    while (!mailbox.tail.isEmpty() && mailbox.tail.peekFirst().timestamp() < oldest) mailbox.tail.pollFirst();
+
+                    if (mailbox.spilled > 0 && mailbox.newestSpilled < oldest) {
+                        mailbox.pending.clear();
+                        mailbox.spilled = 0;
+                        expiredFile[0] = mailbox.file;
+                    }
+
+                    return mailbox.size() == 0 ? null : mailbox;
+                });
+
+                if (expiredFile[0] == null) continue;
+                try {
+                    Files.deleteIfExists(expiredFile[0]);
+                } catch (IOException e) {
+                    System.err.println("Couldn't delete the expired mailbox of " + username + "!\n" + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the pending batches of a mailbox to its file, holding the lock of the file.
+     *
+     * @param username The username of the user of the mailbox.
+     * @param mailbox  The mailbox.
+     */
+    private void write(String username, Mailbox mailbox) {
+        synchronized (fileLockOf(username)) {
+            mailbox.writePending();
+        }
+    }
+
+    /**
+     * Gets the lock held while writing, renaming or deleting the mailbox file of a user.
+     *
+     * @param username The username of the user.
+     * @return The lock.
+     */
+    private Object fileLockOf(String username) {
+        return this.fileLocks[Math.floorMod(username.hashCode(), this.fileLocks.length)];
+    }
+
+    /**
+     * Gets the time of the oldest message that hasn't expired.
+     *
+     * @return The time, in milliseconds since the epoch.
+     */
+    private long oldestKept() {
+        return this.timeToLive > 0 ? System.currentTimeMillis() - this.timeToLive : Long.MIN_VALUE;
+    }
+
+    /**
+     * Merges the mailbox files left being drained, when the server stopped or couldn't read them, back
+     * into the mailbox files of their users, so their messages are delivered on the next sign-in.
+     * The messages of every file of a user are written oldest first to a new mailbox file, which
+     * replaces the old one before the drained files are deleted.
+     */
+    private void recoverDraining() {
+        Map<String, List<Path>> drainedFiles = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + EXTENSION + DRAINING + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                drainedFiles.computeIfAbsent(name.substring(0, name.lastIndexOf(DRAINING)), key -> new ArrayList<>()).add(file);
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            System.err.println("Couldn't find the mailboxes being drained!\n" + e.getMessage());
+            return;
+        }
+
+        for (Map.Entry<String, List<Path>> entry : drainedFiles.entrySet()) {
+            Path file = this.directory.resolve(entry.getKey());
+            Path merged = file.resolveSibling(entry.getKey() + ".recovering");
+
+            try {
+                List<Letter> letters = new ArrayList<>();
+                for (Path drained : entry.getValue()) readLetters(drained, letters);
+                if (Files.exists(file)) readLetters(file, letters);
+                letters.sort(Comparator.comparingLong(Letter::timestamp));
+
+                try (Writer writer = Files.newBufferedWriter(merged, StandardCharsets.UTF_8)) {
+                    for (Letter letter : letters) writer.write(letter.toLine());
+                }
+                Files.move(merged, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (Path drained : entry.getValue()) Files.delete(drained);
+            } catch (IOException e) {
+                System.err.println("Couldn't recover the mailbox being drained " + file + "!\n" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the letters of a mailbox file, skipping the invalid lines.
+     *
+     * @param file    The mailbox file.
+     * @param letters The list the letters are added to.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    private static void readLetters(Path file, List<Letter> letters) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Letter letter = Letter.parse(line);
+                if (letter != null) letters.add(letter);
+            }
+        }
+    }
+
+    /**
+     * Finds the mailbox files in the directory, counting their messages and reading the time of the newest one.
+     */
+    private void recover() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String username;
+                try {
+                    username = new String(HexFormat.of().parseHex(name, 0, name.length() - EXTENSION.length()), StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+
+                Mailbox mailbox = new Mailbox(file);
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        Letter letter = Letter.parse(line);
+                        if (letter == null) continue;
+                        mailbox.spilled++;
+                        mailbox.newestSpilled = Math.max(mailbox.newestSpilled, letter.timestamp());
+                    }
+                }
+                if (mailbox.spilled > 0) this.mailboxes.put(username, mailbox);
+            }
+        } catch (NoSuchFileException e) {
+            // No mailbox was ever written.
+        } catch (IOException e) {
+            System.err.println("Couldn't read the mailboxes!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the mailbox file of a user, named after the hexadecimal UTF-8 bytes of the username,
+     * so any username is a valid file name.
+     *
+     * @param username The username of the user.
+     * @return The path of the mailbox file.
+     */
+    private Path fileOf(String username) {
+        return this.directory.resolve(HexFormat.of().formatHex(username.getBytes(StandardCharsets.UTF_8)) + EXTENSION);
+    }
+
+    /**
+     * The {@code Mailbox} class represents the messages of a user: those written to its file, the batches
+     * waiting to be written, and the in-memory tail. The tail and the counters are only changed while
+     * holding the entry of the mailbox, and the file is only written while holding its lock.
+     */
+    private final class Mailbox {
+        /**
+         * The mailbox file.
+         */
+        private final Path file;
+        /**
+         * The most recent messages, not yet moved out to be written to the file.
+         */
+        private final ArrayDeque<Letter> tail = new ArrayDeque<>();
+        /**
+         * The batches of messages moved out of the tail and waiting to be written to the file, oldest first.
+         */
+        private final Queue<List<Letter>> pending = new ConcurrentLinkedQueue<>();
+        /**
+         * The number of messages moved out of the tail, written to the file or waiting to be.
+         */
+        private int spilled = 0;
+        /**
+         * The time of the newest message moved out of the tail, in milliseconds since the epoch.
+         */
+        private long newestSpilled = Long.MIN_VALUE;
+        /**
+         * Whether the mailbox was drained, so its file belongs to a new mailbox of the user.
+         */
+        private boolean detached = false;
+
+        /**
+         * Constructs a new empty {@code Mailbox} with the specified file.
+         *
+         * @param file The mailbox file.
+         */
+        Mailbox(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * Gets the number of messages of the mailbox.
+         *
+         * @return The number of messages.
+         */
+        int size() {
+            return this.spilled + this.tail.size();
+        }
+
+        /**
+         * Moves the in-memory tail to the batches waiting to be written to the file.
+         *
+         * @return {@code true} if there was a tail to move, {@code false} otherwise.
+         */
+        boolean moveTail() {
+            if (this.tail.isEmpty()) return false;
+
+            this.pending.add(new ArrayList<>(this.tail));
+            this.spilled += this.tail.size();
+            this.newestSpilled = Math.max(this.newestSpilled, this.tail.peekLast().timestamp());
+            this.tail.clear();
+            return true;
+        }
+
+        /**
+         * Appends the batches waiting to be written to the mailbox file, oldest first, unless the mailbox
+         * was drained. If a batch can't be written, it and the following ones stay in memory.
+         * It must be called while holding the lock of the file.
+         */
+        void writePending() {
+            if (this.detached) return;
+
+            List<Letter> batch;
+            while ((batch = this.pending.peek()) != null) {
+                try {
+                    Files.createDirectories(directory);
+                    try (Writer writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                        for (Letter letter : batch) writer.write(letter.toLine());
+                    }
+                } catch (IOException e) {
+                    System.err.println("Couldn't write to the mailbox file " + this.file + "!\n" + e.getMessage());
+                    return;
+                }
+
+                this.pending.poll();
+            }
+        }
+
+        /**
+         * Renames the mailbox file, if any, so a new mailbox of the same user writes to a new file.
+         * It must be called while holding the lock of the file.
+         *
+         * @return The renamed file, or {@code null} if there is no file or it couldn't be renamed.
+         */
+        Path detach() {
+            this.detached = true;
+
+            Path detached = this.file.resolveSibling(this.file.getFileName() + DRAINING + System.nanoTime());
+            try {
+                return Files.move(this.file, detached);
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                System.err.println("Couldn't detach the mailbox file " + this.file + "!\n" + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The {@code Letter} record represents a message of a mailbox and the time it was deposited.
+     * In the mailbox files, it is a line with the time, a tab, and the message with its backslashes,
+     * carriage returns and line feeds escaped.
+     *
+     * @param timestamp The time the message was deposited, in milliseconds since the epoch.
+     * @param message   The message.
+     */
+    private record Letter(long timestamp, String message) {
+        /**
+         * Parses a line of a mailbox file.
+         *
+         * @param line The line.
+         * @return The letter, or {@code null} if the line is invalid.
+         */
+        static Letter parse(String line) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) return null;
+
+            long timestamp;
+            try {
+                timestamp = Long.parseLong(line, 0, tab, 10);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            StringBuilder message = new StringBuilder(line.length() - tab);
+            for (int i = tab + 1; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '\\' && i + 1 < line.length()) {
+                    char escaped = line.charAt(++i);
+                    message.append(escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+                } else {
+                    message.append(c);
+                }
+            }
+
+            return new Letter(timestamp, message.toString());
+        }
+
+        /**
+         * Formats the letter as a line of a mailbox file.
+         *
+         * @return The line, ending with a line feed.
+         */
+        String toLine() {
+            StringBuilder line = new StringBuilder(this.message.length() + 24).append(this.timestamp).append('\t');
+            for (int i = 0; i < this.message.length(); i++) {
+                char c = this.message.charAt(i);
+                switch (c) {
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    default -> line.append(c);
+                }
+            }
+            return line.append('\n').toString();
+        }
+    }
+}
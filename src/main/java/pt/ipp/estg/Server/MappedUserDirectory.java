@@ -0,0 +1,608 @@
+package pt.ipp.estg.Server;
+
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * The {@code MappedUserDirectory} class is a {@link UserDirectory} that keeps the registered users off the
+ * heap, in fixed-width records of a memory-mapped file, with the UUID stored as two longs and the strings
+ * as length-prefixed UTF-8 bytes. Each user is found through an open-addressing hash index, also mapped
+ * from a file, by email and by username. A {@link User} object is only created when a user is looked up,
+ * that is, when the user signs in, so the heap and the startup time don't grow with the number of users.
+ * <p>
+ * The records are mapped in chunks as the file grows. An index is rebuilt from the records, without
+ * creating any user object, when it is missing, doesn't cover every record, or gets too full. When the
+ * record file doesn't exist yet, it is created with the users of {@code users.json} and its write-ahead log;
+ * if either can't be fully read, the open fails and the import is started over on the next run.
+ * <p>
+ * Lookups don't take any lock: a record is written before the index slot that points to it is published.
+ * Adding users and changing roles are serialized.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class MappedUserDirectory implements UserDirectory {
+    /**
+     * The value identifying a record file, at the start of its header.
+     */
+    private static final int MAGIC = 0x55534552;
+    /**
+     * The maximum number of UTF-8 bytes of a username.
+     */
+    private static final int USERNAME_CAPACITY = 32;
+    /**
+     * The maximum number of UTF-8 bytes of an email.
+     */
+    private static final int EMAIL_CAPACITY = 64;
+    /**
+     * The maximum number of UTF-8 bytes of a password.
+     */
+    private static final int PASSWORD_CAPACITY = 64;
+    /**
+     * The offset of the role in a record, after the two longs of the UUID.
+     */
+    private static final int ROLE_OFFSET = 16;
+    /**
+     * The offset of the username length in a record, followed by the username.
+     */
+    private static final int USERNAME_OFFSET = ROLE_OFFSET + 1;
+    /**
+     * The offset of the email length in a record, followed by the email.
+     */
+    private static final int EMAIL_OFFSET = USERNAME_OFFSET + 1 + USERNAME_CAPACITY;
+    /**
+     * The offset of the password length in a record, followed by the password.
+     */
+    private static final int PASSWORD_OFFSET = EMAIL_OFFSET + 1 + EMAIL_CAPACITY;
+    /**
+     * The number of bytes of a record.
+     */
+    private static final int RECORD_SIZE = 192;
+    /**
+     * The number of bytes of the header of the record file, the magic value, the format version and the number
+     * of records, padded to the size of a record so no record spans two chunks.
+     */
+    private static final int HEADER_SIZE = RECORD_SIZE;
+    /**
+     * The number of records mapped by each chunk of the record file.
+     */
+    private static final int CHUNK_RECORDS = 1 << 16;
+    /**
+     * The highest fraction of the slots of an index that can be used before the index is rebuilt larger.
+     */
+    private static final double MAX_LOAD = 0.6;
+    /**
+     * The handle used for publishing and reading the slots of the indexes with release and acquire semantics.
+     */
+    private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    /**
+     * The path of the record file.
+     */
+    private final Path recordFile;
+    /**
+     * The channel of the record file.
+     */
+    private final FileChannel records;
+    /**
+     * Whether every change is forced to the storage device before it is acknowledged.
+     */
+    private final boolean fsync;
+    /**
+     * The mapped chunks of the record file; the first one also holds the header.
+     */
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    /**
+     * The number of records.
+     */
+    private volatile int count;
+    /**
+     * The index of the records by email.
+     */
+    private final HashIndex byEmail;
+    /**
+     * The index of the records by username; with duplicate usernames, the first user registered.
+     */
+    private final HashIndex byUsername;
+
+    /**
+     * Opens the record file and indexes next to the specified user file, creating them from the users
+     * of the user file and its write-ahead log if they don't exist. The record file is created under a
+     * temporary name and only renamed once every user is in, so an import that fails or is interrupted
+     * is started over on the next run.
+     *
+     * @param usersFilePath The path of the user file.
+     * @param fsync         Whether every change is forced to the storage device before it is acknowledged.
+     * @throws IOException If an I/O error occurs while opening or creating the files, the user file or its
+     *                     write-ahead log can't be fully read, or a user of the user file doesn't fit in a record.
+     */
+    MappedUserDirectory(String usersFilePath, boolean fsync) throws IOException {
+        Path usersFile = Path.of(usersFilePath);
+        this.recordFile = usersFile.resolveSibling(usersFile.getFileName() + ".db");
+        this.fsync = fsync;
+
+        boolean created = !Files.exists(this.recordFile);
+        Path importFile = this.recordFile.resolveSibling(this.recordFile.getFileName() + ".importing");
+        if (created) Files.deleteIfExists(importFile);
+
+        this.records = FileChannel.open(created ? importFile : this.recordFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ensureCapacity(0);
+
+            MappedByteBuffer header = this.chunks[0];
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, 1);
+                header.putLong(8, 0);
+            } else if (header.getInt(0) != MAGIC) {
+                throw new IOException("The user record file " + this.recordFile + " is invalid.");
+            }
+            this.count = (int) header.getLong(8);
+            ensureCapacity(this.count);
+
+            this.byEmail = new HashIndex(usersFile.resolveSibling(usersFile.getFileName() + ".db.email"), EMAIL_OFFSET);
+            this.byUsername = new HashIndex(usersFile.resolveSibling(usersFile.getFileName() + ".db.username"), USERNAME_OFFSET);
+
+            if (created) {
+                Collection<User> users = new UserStore(usersFilePath, Integer.MAX_VALUE, false).read();
+                for (User user : users) {
+                    try {
+                        checkFields(user.getUsername(), user.getEmail(), user.getPassword());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("The user " + user.getUsername() + " doesn't fit in the user record file: " + e.getMessage() + ".");
+                    }
+                    if (!insert(user, false)) System.err.println("Skipped the user " + user.getUsername() + " while importing the users, its email is already in use!");
+                }
+                force();
+                Files.move(importFile, this.recordFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.records.close();
+            if (created) Files.deleteIfExists(importFile);
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public User findByEmail(String email) {
+        int record = this.byEmail.find(email.getBytes(StandardCharsets.UTF_8));
+        return record < 0 ? null : readUser(record);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public User findByUsername(String username) {
+        int record = this.byUsername.find(username.getBytes(StandardCharsets.UTF_8));
+        return record < 0 ? null : readUser(record);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The username must take at most 32 UTF-8 bytes, and the email and the password at most 64 each.
+     */
+    @Override
+    public void checkFields(String username, String email, String password) {
+        checkField("username", username, USERNAME_CAPACITY);
+        checkField("email", email, EMAIL_CAPACITY);
+        checkField("password", password, PASSWORD_CAPACITY);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The user isn't added if its username, email or password is longer than its record field.
+     */
+    @Override
+    public synchronized boolean add(User user) {
+        try {
+            return insert(user, this.fsync);
+        } catch (IOException e) {
+            System.err.println("Couldn't store the user!\n" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void changeRole(User user, Role role) {
+        user.setRole(role);
+
+        int record = this.byEmail.find(user.getEmail().getBytes(StandardCharsets.UTF_8));
+        if (record < 0) return;
+
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        chunk.put(offset + ROLE_OFFSET, (byte) role.ordinal());
+        if (this.fsync) chunk.force(offset, RECORD_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Writes the record of a new user, publishes the record in the indexes, and updates the number of records.
+     *
+     * @param user  The new user.
+     * @param force Whether the record, the header and the index slots are forced to the storage device.
+     * @return {@code true} if the user was added, {@code false} if the email is in use or a field is too long.
+     * @throws IOException If an I/O error occurs while growing the files.
+     */
+    private boolean insert(User user, boolean force) throws IOException {
+        byte[] username = user.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] email = user.getEmail().getBytes(StandardCharsets.UTF_8);
+        byte[] password = user.getPassword().getBytes(StandardCharsets.UTF_8);
+
+        if (username.length > USERNAME_CAPACITY || email.length > EMAIL_CAPACITY || password.length > PASSWORD_CAPACITY) return false;
+        if (this.byEmail.find(email) >= 0) return false;
+
+        int record = this.count;
+        ensureCapacity(record + 1);
+
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        UUID id = user.getId() != null ? user.getId() : UUID.randomUUID();
+        chunk.putLong(offset, id.getMostSignificantBits());
+        chunk.putLong(offset + 8, id.getLeastSignificantBits());
+        chunk.put(offset + ROLE_OFFSET, (byte) (user.getRole() != null ? user.getRole() : Role.Private).ordinal());
+        putField(chunk, offset + USERNAME_OFFSET, username);
+        putField(chunk, offset + EMAIL_OFFSET, email);
+        putField(chunk, offset + PASSWORD_OFFSET, password);
+        if (force) chunk.force(offset, RECORD_SIZE);
+
+        this.count = record + 1;
+        this.chunks[0].putLong(8, this.count);
+        if (force) this.chunks[0].force(0, HEADER_SIZE);
+
+        this.byEmail.insert(email, record, force);
+        if (this.byUsername.find(username) < 0) this.byUsername.insert(username, record, force);
+        return true;
+    }
+
+    /**
+     * Creates a user object from a record.
+     *
+     * @param record The number of the record.
+     * @return The user.
+     */
+    private User readUser(int record) {
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record);
+        UUID id = new UUID(chunk.getLong(offset), chunk.getLong(offset + 8));
+        Role role = Role.values()[chunk.get(offset + ROLE_OFFSET)];
+        return new User(id, getField(chunk, offset + USERNAME_OFFSET), getField(chunk, offset + EMAIL_OFFSET), getField(chunk, offset + PASSWORD_OFFSET), role);
+    }
+
+    /**
+     * Checks if a field fits in its record field.
+     *
+     * @param name     The name of the field, for the error message.
+     * @param value    The field.
+     * @param capacity The maximum number of UTF-8 bytes of the field.
+     * @throws IllegalArgumentException If the field is longer than its record field.
+     */
+    private static void checkField(String name, String value, int capacity) {
+        if (value.getBytes(StandardCharsets.UTF_8).length > capacity) {
+            throw new IllegalArgumentException("The " + name + " can't be longer than " + capacity + " bytes");
+        }
+    }
+
+    /**
+     * Writes a length-prefixed field of a record.
+     *
+     * @param chunk  The chunk of the record.
+     * @param offset The offset of the field in the chunk.
+     * @param value  The UTF-8 bytes of the field.
+     */
+    private static void putField(MappedByteBuffer chunk, int offset, byte[] value) {
+        chunk.put(offset, (byte) value.length);
+        chunk.put(offset + 1, value);
+    }
+
+    /**
+     * Reads a length-prefixed field of a record.
+     *
+     * @param chunk  The chunk of the record.
+     * @param offset The offset of the field in the chunk.
+     * @return The field.
+     */
+    private static String getField(MappedByteBuffer chunk, int offset) {
+        byte[] value = new byte[chunk.get(offset) & 0xFF];
+        chunk.get(offset + 1, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks if a length-prefixed field of a record holds the specified bytes.
+     *
+     * @param record The number of the record.
+     * @param field  The offset of the field in the record.
+     * @param value  The bytes.
+     * @return {@code true} if the field holds the bytes, {@code false} otherwise.
+     */
+    private boolean fieldEquals(int record, int field, byte[] value) {
+        MappedByteBuffer chunk = chunkOf(record);
+        int offset = offsetOf(record) + field;
+        if ((chunk.get(offset) & 0xFF) != value.length) return false;
+        for (int i = 0; i < value.length; i++) {
+            if (chunk.get(offset + 1 + i) != value[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the chunk of the record file holding a record.
+     *
+     * @param record The number of the record.
+     * @return The chunk.
+     */
+    private MappedByteBuffer chunkOf(int record) {
+        return this.chunks[(int) ((HEADER_SIZE + (long) record * RECORD_SIZE) / chunkSize())];
+    }
+
+    /**
+     * Gets the offset of a record in its chunk.
+     *
+     * @param record The number of the record.
+     * @return The offset.
+     */
+    private static int offsetOf(int record) {
+        return (int) ((HEADER_SIZE + (long) record * RECORD_SIZE) % chunkSize());
+    }
+
+    /**
+     * Gets the number of bytes mapped by each chunk, a multiple of the record size.
+     *
+     * @return The number of bytes.
+     */
+    private static long chunkSize() {
+        return (long) CHUNK_RECORDS * RECORD_SIZE;
+    }
+
+    /**
+     * Maps the chunks needed for holding the specified number of records.
+     *
+     * @param records The number of records.
+     * @throws IOException If an I/O error occurs while mapping the file.
+     */
+    private void ensureCapacity(int records) throws IOException {
+        int needed = (int) ((HEADER_SIZE + (long) Math.max(records, 1) * RECORD_SIZE + chunkSize() - 1) / chunkSize());
+        if (needed <= this.chunks.length) return;
+
+        MappedByteBuffer[] grown = Arrays.copyOf(this.chunks, needed);
+        for (int i = this.chunks.length; i < needed; i++) {
+            grown[i] = this.records.map(FileChannel.MapMode.READ_WRITE, i * chunkSize(), chunkSize());
+        }
+        this.chunks = grown;
+    }
+
+    /**
+     * Forces the records, the header and the indexes to the storage device.
+     */
+    private void force() {
+        for (MappedByteBuffer chunk : this.chunks) chunk.force();
+        this.byEmail.force();
+        this.byUsername.force();
+    }
+
+    /**
+     * Hashes a key, spreading the bits so the low bits can be used for finding the slot.
+     *
+     * @param key The bytes of the key.
+     * @return The hash.
+     */
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key);
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * The {@code HashIndex} class is an open-addressing hash index of the records by one of their fields,
+     * mapped from a file. Each slot holds the hash of the key in the upper half and the record number plus
+     * one in the lower half, zero being an empty slot; collisions are resolved by linear probing.
+     * The header of the file holds the number of slots and the number of records indexed.
+     */
+    private final class HashIndex {
+        /**
+         * The number of bytes of the header of the index file.
+         */
+        private static final int INDEX_HEADER_SIZE = 16;
+        /**
+         * The path of the index file.
+         */
+        private final Path file;
+        /**
+         * The offset of the indexed field in a record.
+         */
+        private final int field;
+        /**
+         * The mapped index file.
+         */
+        private volatile MappedByteBuffer slots;
+        /**
+         * The number of slots minus one, the number of slots being a power of two.
+         */
+        private volatile int mask;
+
+        /**
+         * Opens the index file, rebuilding it from the records if it is missing, doesn't index every record, or is too full.
+         *
+         * @param file  The path of the index file.
+         * @param field The offset of the indexed field in a record.
+         * @throws IOException If an I/O error occurs while opening or rebuilding the file.
+         */
+        HashIndex(Path file, int field) throws IOException {
+            this.file = file;
+            this.field = field;
+
+            if (Files.exists(file)) {
+                map();
+                if (this.slots.getLong(8) == count && count < (this.mask + 1) * MAX_LOAD) return;
+            }
+            rebuild(count);
+        }
+
+        /**
+         * Finds the record with the specified key.
+         *
+         * @param key The bytes of the key.
+         * @return The number of the record, or {@code -1} if there is none.
+         */
+        int find(byte[] key) {
+            MappedByteBuffer slots = this.slots;
+            int mask = slots.capacity() / Long.BYTES - INDEX_HEADER_SIZE / Long.BYTES - 1;
+            int hash = hash(key);
+
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                long value = (long) SLOT.getAcquire(slots, INDEX_HEADER_SIZE + slot * Long.BYTES);
+                if (value == 0) return -1;
+
+                int record = (int) value - 1;
+                if ((int) (value >>> 32) == hash && fieldEquals(record, this.field, key)) return record;
+            }
+        }
+
+        /**
+         * Publishes a record in the index, rebuilding the index larger first if it is too full.
+         *
+         * @param key    The bytes of the key.
+         * @param record The number of the record.
+         * @param force  Whether the slot is forced to the storage device.
+         * @throws IOException If an I/O error occurs while rebuilding the index.
+         */
+        void insert(byte[] key, int record, boolean force) throws IOException {
+            if (count >= (this.mask + 1) * MAX_LOAD) {
+                rebuild(count);
+                if (force) force();
+                return;
+            }
+
+            int slot = put(this.slots, this.mask, key, record);
+            this.slots.putLong(8, count);
+            if (force) this.slots.force(INDEX_HEADER_SIZE + slot * Long.BYTES, Long.BYTES);
+        }
+
+        /**
+         * Writes a record to the first free slot of its key.
+         *
+         * @param slots  The mapped index file.
+         * @param mask   The number of slots minus one.
+         * @param key    The bytes of the key.
+         * @param record The number of the record.
+         * @return The slot written.
+         */
+        private int put(MappedByteBuffer slots, int mask, byte[] key, int record) {
+            int hash = hash(key);
+            int slot = hash & mask;
+            while (slots.getLong(INDEX_HEADER_SIZE + slot * Long.BYTES) != 0) slot = (slot + 1) & mask;
+            SLOT.setRelease(slots, INDEX_HEADER_SIZE + slot * Long.BYTES, (long) hash << 32 | (record + 1L));
+            return slot;
+        }
+
+        /**
+         * Rebuilds the index file from the first records, with enough slots for twice as many records,
+         * and replaces the index being searched once it is complete.
+         *
+         * @param records The number of records to index.
+         * @throws IOException If an I/O error occurs while writing the file.
+         */
+        private void rebuild(int records) throws IOException {
+            int capacity = Integer.highestOneBit((int) Math.max(1024, Math.min(1L << 26, (long) (records * 2 / MAX_LOAD)))) << 1;
+            Path temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+            Files.deleteIfExists(temporary);
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer rebuilt = channel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) capacity * Long.BYTES);
+                rebuilt.putLong(0, capacity);
+                for (int record = 0; record < records; record++) {
+                    byte[] key = keyOf(record);
+                    if (this.field == EMAIL_OFFSET || findIn(rebuilt, capacity - 1, key) < 0) put(rebuilt, capacity - 1, key, record);
+                }
+                rebuilt.putLong(8, records);
+                rebuilt.force();
+            }
+
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map();
+        }
+
+        /**
+         * Finds a key in an index being rebuilt.
+         *
+         * @param slots The mapped index file.
+         * @param mask  The number of slots minus one.
+         * @param key   The bytes of the key.
+         * @return The number of the record, or {@code -1} if there is none.
+         */
+        private int findIn(MappedByteBuffer slots, int mask, byte[] key) {
+            int hash = hash(key);
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                long value = slots.getLong(INDEX_HEADER_SIZE + slot * Long.BYTES);
+                if (value == 0) return -1;
+                int record = (int) value - 1;
+                if ((int) (value >>> 32) == hash && fieldEquals(record, this.field, key)) return record;
+            }
+        }
+
+        /**
+         * Reads the indexed field of a record.
+         *
+         * @param record The number of the record.
+         * @return The bytes of the field.
+         */
+        private byte[] keyOf(int record) {
+            MappedByteBuffer chunk = chunkOf(record);
+            int offset = offsetOf(record) + this.field;
+            byte[] key = new byte[chunk.get(offset) & 0xFF];
+            chunk.get(offset + 1, key);
+            return key;
+        }
+
+        /**
+         * Maps the index file.
+         *
+         * @throws IOException If an I/O error occurs while mapping the file.
+         */
+        private void map() throws IOException {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                this.mask = (int) mapped.getLong(0) - 1;
+                this.slots = mapped;
+            }
+        }
+
+        /**
+         * Forces the index file to the storage device.
+         */
+        void force() {
+            this.slots.force();
+        }
+    }
+}
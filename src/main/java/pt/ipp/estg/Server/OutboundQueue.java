@@ -0,0 +1,206 @@
+package pt.ipp.estg.Server;
+
+import pt.ipp.estg.Enums.BackpressurePolicy;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code OutboundQueue} class represents the bounded buffer of messages waiting to be written
+ * to a single client. It enforces a hard limit on the number of queued messages and applies a
+ * {@link BackpressurePolicy} once the queued bytes go over the high-water mark, so a slow client
+ * can't grow the heap or stall the clients that keep up.
+ * <p>
+ * The queue is guarded by a {@link ReentrantLock} that is never held while writing to the network.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class OutboundQueue {
+    /**
+     * The messages waiting to be written, oldest first.
+     */
+    private final ArrayDeque<EncodedMessage> messages = new ArrayDeque<>();
+    /**
+     * The lock that guards the queue.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * The condition signalled when a message is added to the queue.
+     */
+    private final Condition notEmpty = this.lock.newCondition();
+    /**
+     * The maximum number of queued messages.
+     */
+    private final int capacity;
+    /**
+     * The number of queued bytes above which the client is considered slow.
+     */
+    private final int highWaterMark;
+    /**
+     * The policy applied when the queued bytes go over the high-water mark.
+     */
+    private final BackpressurePolicy policy;
+    /**
+     * The number of bytes currently queued.
+     */
+    private long queuedBytes = 0;
+
+    /**
+     * Constructs a new {@code OutboundQueue} with the specified limits and policy.
+     *
+     * @param capacity      The maximum number of queued messages.
+     * @param highWaterMark The number of queued bytes above which the policy is applied.
+     * @param policy        The policy applied when the queued bytes go over the high-water mark.
+     */
+    OutboundQueue(int capacity, int highWaterMark, BackpressurePolicy policy) {
+        this.capacity = capacity;
+        this.highWaterMark = highWaterMark;
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a message to the queue, applying the backpressure policy if the client is over the high-water mark.
+     *
+     * @param message The message to add.
+     * @return {@code true} if the client may stay connected; {@code false} if it must be disconnected.
+     */
+    boolean offer(EncodedMessage message) {
+        this.lock.lock();
+        try {
+            if (this.policy == BackpressurePolicy.Coalesce && message.getStatusKey() != null) {
+                removeStatus(message.getStatusKey());
+            }
+
+            this.messages.add(message);
+            this.queuedBytes += message.length();
+            this.notEmpty.signal();
+
+            if (this.queuedBytes > this.highWaterMark) {
+                BackpressureStats.highWaterMarkReached.increment();
+                if (this.policy == BackpressurePolicy.Disconnect) return disconnect();
+                if (this.policy == BackpressurePolicy.DropOldest) dropOldestChat();
+            }
+
+            return this.messages.size() <= this.capacity || disconnect();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the queued status message of the specified kind, if any, as it is superseded by a newer one.
+     *
+     * @param statusKey The kind of status.
+     */
+    private void removeStatus(String statusKey) {
+        Iterator<EncodedMessage> iterator = this.messages.iterator();
+
+        while (iterator.hasNext()) {
+            EncodedMessage queued = iterator.next();
+            if (statusKey.equals(queued.getStatusKey())) {
+                iterator.remove();
+                this.queuedBytes -= queued.length();
+                BackpressureStats.coalescedMessages.increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest chat messages until the queued bytes are back under the high-water mark
+     * or there are no more chat messages to remove.
+     */
+    private void dropOldestChat() {
+        Iterator<EncodedMessage> iterator = this.messages.iterator();
+
+        while (this.queuedBytes > this.highWaterMark && iterator.hasNext()) {
+            EncodedMessage queued = iterator.next();
+            if (queued.isChat()) {
+                iterator.remove();
+                this.queuedBytes -= queued.length();
+                BackpressureStats.droppedMessages.increment();
+            }
+        }
+    }
+
+    /**
+     * Counts a slow client disconnection.
+     *
+     * @return Always {@code false}, meaning the client must be disconnected.
+     */
+    private boolean disconnect() {
+        BackpressureStats.disconnectedClients.increment();
+        return false;
+    }
+
+    /**
+     * Removes the oldest message from the queue.
+     *
+     * @return The oldest message, or {@code null} if the queue is empty.
+     */
+    EncodedMessage poll() {
+        this.lock.lock();
+        try {
+            EncodedMessage message = this.messages.poll();
+            if (message != null) this.queuedBytes -= message.length();
+            return message;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every queued message, waiting for at least one if the queue is empty.
+     *
+     * @param batch The list the removed messages are added to, oldest first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    void takeAll(List<EncodedMessage> batch) throws InterruptedException {
+        this.lock.lock();
+        try {
+            while (this.messages.isEmpty()) {
+                this.notEmpty.await();
+            }
+            batch.addAll(this.messages);
+            this.messages.clear();
+            this.queuedBytes = 0;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the queue is empty.
+     *
+     * @return {@code true} if there are no queued messages, {@code false} otherwise.
+     */
+    boolean isEmpty() {
+        this.lock.lock();
+        try {
+            return this.messages.isEmpty();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every queued message and adds the specified one, used for waking up a waiting writer.
+     *
+     * @param message The message left in the queue.
+     */
+    void replaceAll(EncodedMessage message) {
+        this.lock.lock();
+        try {
+            this.messages.clear();
+            this.messages.add(message);
+            this.queuedBytes = message.length();
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
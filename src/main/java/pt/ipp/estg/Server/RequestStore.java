@@ -0,0 +1,433 @@
+package pt.ipp.estg.Server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import pt.ipp.estg.Entities.Request;
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+import pt.ipp.estg.Utils.JsonCodecs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * The {@code RequestStore} class keeps the pending missile launch requests, and the number of requests
+ * accepted and rejected, in memory, and persists every change to an append-only state log: one JSON line
+ * per created request, per accepted or rejected request, and for the totals. Adding and resolving a
+ * request are map operations plus a single appended line.
+ * <p>
+ * Once the log holds many more lines than there are pending requests, it is rewritten with only the
+ * totals and the pending requests, replacing the old log atomically. Recovery replays the log, so its
+ * time is proportional to the pending requests rather than to every request ever made.
+ * <p>
+ * The pending requests are found directly by ID, and are also indexed by the role that must approve
+ * them, so listing the requests of a role only touches those requests. A resolved request is removed
+ * from memory; its outcome is kept in the log until the next rewrite, and in the totals.
+ * <p>
+ * The requesters are stored without their passwords, since only their usernames are needed for
+ * notifying them.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class RequestStore {
+    /**
+     * The Gson instance used for serializing the changes, with the streaming codecs of the requests.
+     */
+    private static final Gson gson = JsonCodecs.GSON;
+    /**
+     * The number of lines the log may hold beyond twice the pending requests before it is rewritten.
+     */
+    private static final int COMPACTION_SLACK = 1000;
+    /**
+     * The path of the state log.
+     */
+    private final Path logFile;
+    /**
+     * Whether every change is forced to the storage device before it is acknowledged.
+     */
+    private final boolean fsync;
+    /**
+     * The pending requests by ID, in the order they were made.
+     */
+    private final Map<UUID, Request> pending = new LinkedHashMap<>();
+    /**
+     * The IDs of the pending requests by the role that must approve them, in the order they were made.
+     */
+    private final Map<Role, Set<UUID>> pendingByApproval = new EnumMap<>(Role.class);
+    /**
+     * The channel of the state log, opened for appending, or {@code null} if it couldn't be opened.
+     */
+    private FileChannel log;
+    /**
+     * The number of lines in the state log.
+     */
+    private int logLines = 0;
+    /**
+     * The number of requests accepted.
+     */
+    private long accepted = 0;
+    /**
+     * The number of requests rejected.
+     */
+    private long rejected = 0;
+
+    /**
+     * Constructs a new {@code RequestStore} with the specified state log, recovering the pending requests
+     * and the totals from it. A line torn by a crash at the end of the log is discarded.
+     *
+     * @param logPath The path of the state log.
+     * @param fsync   Whether every change is forced to the storage device before it is acknowledged.
+     */
+    RequestStore(String logPath, boolean fsync) {
+        this.logFile = Path.of(logPath);
+        this.fsync = fsync;
+        for (Role role : Role.values()) this.pendingByApproval.put(role, new LinkedHashSet<>());
+
+        try {
+            int validLength = replay();
+            this.log = FileChannel.open(this.logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            this.log.truncate(validLength);
+            this.log.position(validLength);
+        } catch (IOException e) {
+            System.err.println("Couldn't open the request log, requests won't be persisted!\n" + e.getMessage());
+            return;
+        }
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Adds a pending request and persists it.
+     *
+     * @param id      The ID of the request.
+     * @param request The request.
+     */
+    synchronized void add(UUID id, Request request) {
+        putPending(id, request);
+        append(Change.created(id, request));
+    }
+
+    /**
+     * Accepts or rejects a pending request, removing it, counting it and persisting the change.
+     * A request is only resolved once, even if several users resolve it at the same time.
+     *
+     * @param id       The ID of the request.
+     * @param accepted Whether the request is accepted, or rejected.
+     * @return The request, or {@code null} if there is no pending request with the ID.
+     */
+    synchronized Request resolve(UUID id, boolean accepted) {
+        Request request = removePending(id);
+        if (request == null) return null;
+
+        if (accepted) this.accepted++;
+        else this.rejected++;
+        append(Change.resolved(id, accepted));
+        return request;
+    }
+
+    /**
+     * Gets a pending request by ID.
+     *
+     * @param id The ID of the request.
+     * @return The request, or {@code null} if there is no pending request with the ID.
+     */
+    synchronized Request get(UUID id) {
+        return this.pending.get(id);
+    }
+
+    /**
+     * Gets a copy of the pending requests, so messages can be written to the clients without holding the store.
+     *
+     * @return A copy of the entries of the pending requests, in the order they were made.
+     */
+    synchronized List<Map.Entry<UUID, Request>> snapshot() {
+        List<Map.Entry<UUID, Request>> entries = new ArrayList<>(this.pending.size());
+        for (Map.Entry<UUID, Request> entry : this.pending.entrySet()) entries.add(Map.entry(entry.getKey(), entry.getValue()));
+        return entries;
+    }
+
+    /**
+     * Gets a copy of the pending requests that must be approved by a role, only touching those requests.
+     *
+     * @param approval The role that must approve the requests.
+     * @return A copy of the entries of the pending requests of the role, in the order they were made.
+     */
+    synchronized List<Map.Entry<UUID, Request>> snapshot(Role approval) {
+        Set<UUID> ids = this.pendingByApproval.get(approval);
+        List<Map.Entry<UUID, Request>> entries = new ArrayList<>(ids.size());
+        for (UUID id : ids) entries.add(Map.entry(id, this.pending.get(id)));
+        return entries;
+    }
+
+    /**
+     * Gets the number of pending requests.
+     *
+     * @return The number of pending requests.
+     */
+    synchronized int pendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Gets the number of requests accepted.
+     *
+     * @return The number of requests accepted.
+     */
+    synchronized long acceptedCount() {
+        return this.accepted;
+    }
+
+    /**
+     * Gets the number of requests rejected.
+     *
+     * @return The number of requests rejected.
+     */
+    synchronized long rejectedCount() {
+        return this.rejected;
+    }
+
+    /**
+     * Adds a pending request to the requests by ID and to the requests of its approval role.
+     *
+     * @param id      The ID of the request.
+     * @param request The request.
+     */
+    private void putPending(UUID id, Request request) {
+        Request previous = this.pending.put(id, request);
+        if (previous != null && previous.getApproval() != null) this.pendingByApproval.get(previous.getApproval()).remove(id);
+        if (request.getApproval() != null) this.pendingByApproval.get(request.getApproval()).add(id);
+    }
+
+    /**
+     * Removes a pending request from the requests by ID and from the requests of its approval role.
+     *
+     * @param id The ID of the request.
+     * @return The request, or {@code null} if there is no pending request with the ID.
+     */
+    private Request removePending(UUID id) {
+        Request request = this.pending.remove(id);
+        if (request != null && request.getApproval() != null) this.pendingByApproval.get(request.getApproval()).remove(id);
+        return request;
+    }
+
+    /**
+     * Replays the changes of the state log.
+     *
+     * @return The number of bytes of the complete lines of the log.
+     * @throws IOException If an I/O error occurs while reading the log.
+     */
+    private int replay() throws IOException {
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(this.logFile);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+
+        int start = 0;
+        for (int end = 0; end < contents.length; end++) {
+            if (contents[end] != '\n') continue;
+
+            String line = new String(contents, start, end - start, StandardCharsets.UTF_8);
+            start = end + 1;
+            if (line.isBlank()) continue;
+
+            try {
+                gson.fromJson(line, Change.class).applyTo(this);
+                this.logLines++;
+            } catch (JsonParseException | NullPointerException e) {
+                System.err.println("Skipping an invalid change of the request log!\n" + line);
+            }
+        }
+
+        return start;
+    }
+
+    /**
+     * Appends a change to the state log, forcing it to the storage device if configured,
+     * and rewrites the log once it holds too many lines.
+     *
+     * @param change The change.
+     */
+    private void append(Change change) {
+        if (this.log == null) return;
+
+        try {
+            write(this.log, change);
+            if (this.fsync) this.log.force(false);
+            this.logLines++;
+        } catch (IOException e) {
+            System.err.println("Couldn't write to the request log!\n" + e.getMessage());
+            return;
+        }
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Rewrites the state log if it holds too many lines, keeping the current log if the rewrite fails.
+     */
+    private void compactIfNeeded() {
+        if (!needsCompaction()) return;
+
+        try {
+            compact();
+        } catch (IOException e) {
+            System.err.println("Couldn't rewrite the request log, it keeps growing until it can be rewritten!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks if the state log holds many more lines than needed for the pending requests.
+     *
+     * @return {@code true} if the log should be rewritten, {@code false} otherwise.
+     */
+    private boolean needsCompaction() {
+        return this.logLines > 2 * this.pending.size() + COMPACTION_SLACK;
+    }
+
+    /**
+     * Rewrites the state log with only the totals and the pending requests, in a temporary file
+     * that then replaces the log, so a failed rewrite never loses the log. The channel of the
+     * temporary file becomes the channel of the log only once it replaced the log, so the log
+     * keeps being appended to if the rewrite fails.
+     *
+     * @throws IOException If an I/O error occurs while rewriting the log.
+     */
+    private void compact() throws IOException {
+        Path temporary = this.logFile.resolveSibling(this.logFile.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            write(channel, Change.totals(this.accepted, this.rejected));
+            for (Map.Entry<UUID, Request> entry : this.pending.entrySet()) write(channel, Change.created(entry.getKey(), entry.getValue()));
+            channel.force(false);
+            Files.move(temporary, this.logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        this.log.close();
+        this.log = channel;
+        this.logLines = 1 + this.pending.size();
+    }
+
+    /**
+     * Writes a change as a line of a log.
+     *
+     * @param channel The channel of the log.
+     * @param change  The change.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    private static void write(FileChannel channel, Change change) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap((gson.toJson(change) + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) channel.write(line);
+    }
+
+    /**
+     * The {@code Change} class represents a line of the state log: a created request, an accepted
+     * or rejected request, or the totals of accepted and rejected requests when the log was rewritten.
+     */
+    private static class Change {
+        /**
+         * The ID of the created or resolved request, or {@code null} for the totals.
+         */
+        private final UUID id;
+        /**
+         * The created request, or {@code null} for a resolved request or the totals.
+         */
+        private final Request request;
+        /**
+         * Whether the resolved request was accepted, or {@code null} for a created request or the totals.
+         */
+        private final Boolean accepted;
+        /**
+         * The number of requests accepted, or {@code null} unless the change is the totals.
+         */
+        private final Long acceptedTotal;
+        /**
+         * The number of requests rejected, or {@code null} unless the change is the totals.
+         */
+        private final Long rejectedTotal;
+
+        /**
+         * Constructs a new {@code Change}.
+         *
+         * @param id            The ID of the created or resolved request, or {@code null} for the totals.
+         * @param request       The created request, or {@code null}.
+         * @param accepted      Whether the resolved request was accepted, or {@code null}.
+         * @param acceptedTotal The number of requests accepted, or {@code null}.
+         * @param rejectedTotal The number of requests rejected, or {@code null}.
+         */
+        private Change(UUID id, Request request, Boolean accepted, Long acceptedTotal, Long rejectedTotal) {
+            this.id = id;
+            this.request = request;
+            this.accepted = accepted;
+            this.acceptedTotal = acceptedTotal;
+            this.rejectedTotal = rejectedTotal;
+        }
+
+        /**
+         * Creates the change of a created request, keeping the requester without the password.
+         *
+         * @param id      The ID of the request.
+         * @param request The request.
+         * @return The change.
+         */
+        static Change created(UUID id, Request request) {
+            User user = request.getUser();
+            User requester = new User(user.getId(), user.getUsername(), user.getEmail(), null, user.getRole());
+            return new Change(id, new Request(requester, request.getLocation(), request.getReason(), request.getApproval()), null, null, null);
+        }
+
+        /**
+         * Creates the change of an accepted or rejected request.
+         *
+         * @param id       The ID of the request.
+         * @param accepted Whether the request was accepted, or rejected.
+         * @return The change.
+         */
+        static Change resolved(UUID id, boolean accepted) {
+            return new Change(id, null, accepted, null, null);
+        }
+
+        /**
+         * Creates the change holding the totals of accepted and rejected requests.
+         *
+         * @param accepted The number of requests accepted.
+         * @param rejected The number of requests rejected.
+         * @return The change.
+         */
+        static Change totals(long accepted, long rejected) {
+            return new Change(null, null, null, accepted, rejected);
+        }
+
+        /**
+         * Applies the change to a store being recovered.
+         *
+         * @param store The store.
+         */
+        void applyTo(RequestStore store) {
+            if (this.acceptedTotal != null) {
+                store.accepted = this.acceptedTotal;
+                store.rejected = Objects.requireNonNull(this.rejectedTotal);
+            } else if (this.request != null) {
+                store.putPending(Objects.requireNonNull(this.id), this.request);
+            } else if (store.removePending(Objects.requireNonNull(this.id)) != null) {
+                if (Objects.requireNonNull(this.accepted)) store.accepted++;
+                else store.rejected++;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package pt.ipp.estg.Server;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The {@code RoomRegistry} interface represents the chat rooms and their members. Every operation
+ * reports its outcome to a callback, which may run on the calling thread or later on another thread,
+ * depending on the execution model of the registry; operations on the same room are applied in the
+ * order they were made.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+interface RoomRegistry {
+    /**
+     * The outcome of an operation on a room.
+     */
+    enum Outcome {
+        /**
+         * The client joined or left the room, or the message was sent to its members.
+         */
+        Done,
+        /**
+         * The room doesn't exist.
+         */
+        NoRoom,
+        /**
+         * The client was already in the room it tried to join.
+         */
+        AlreadyMember,
+        /**
+         * The client wasn't in the room it tried to leave or send a message to.
+         */
+        NotMember
+    }
+
+    /**
+     * Creates a room with the specified client as its first member.
+     *
+     * @param name    The name of the room.
+     * @param creator The client creating the room.
+     * @param done    The callback told whether the room was created, or the name is in use.
+     */
+    void create(String name, Server.ClientHandler creator, Consumer<Boolean> done);
+
+    /**
+     * Adds a client to a room.
+     *
+     * @param name   The name of the room.
+     * @param member The client joining the room.
+     * @param done   The callback told the outcome: {@code Done}, {@code NoRoom} or {@code AlreadyMember}.
+     */
+    void join(String name, Server.ClientHandler member, Consumer<Outcome> done);
+
+    /**
+     * Removes a client from a room, removing the room once it is empty.
+     *
+     * @param name   The name of the room.
+     * @param member The client leaving the room.
+     * @param done   The callback told the outcome: {@code Done}, {@code NoRoom} or {@code NotMember}.
+     */
+    void leave(String name, Server.ClientHandler member, Consumer<Outcome> done);
+
+    /**
+     * Sends a message to the members of a room other than the sender, if the sender is a member.
+     *
+     * @param name    The name of the room.
+     * @param sender  The client sending the message.
+     * @param message The encoded message.
+     * @param done    The callback told the outcome: {@code Done}, {@code NoRoom} or {@code NotMember}.
+     */
+    void send(String name, Server.ClientHandler sender, EncodedMessage message, Consumer<Outcome> done);
+
+    /**
+     * Gets the number of members of each room.
+     *
+     * @param done The callback given the number of members by room name.
+     */
+    void sizes(Consumer<Map<String, Integer>> done);
+}
@@ -0,0 +1,230 @@
+package pt.ipp.estg.Server;
+
+import pt.ipp.estg.Utils.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@code SelectorServer} class is a {@link Server} that serves client connections with a
+ * non-blocking transport built on {@link ServerSocketChannel} and {@link Selector}.
+ * Accepted channels are distributed in round-robin among a small pool of event loops,
+ * each one running on its own thread, instead of spawning one thread per connected client.
+ * The event loops only do socket I/O: the commands of each client are handled in order on a
+ * virtual thread, so a command waiting for the disk doesn't stall the other clients of its loop.
+ * <p>
+ * The line-based command protocol is the same as the one served by the blocking transport.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public class SelectorServer extends Server {
+    /**
+     * The server socket channel used for accepting client connections.
+     */
+    private final ServerSocketChannel serverSocketChannel;
+    /**
+     * The event loops that serve the accepted client channels.
+     */
+    private final EventLoop[] eventLoops;
+    /**
+     * The index of the event loop that will receive the next accepted channel.
+     */
+    private int nextEventLoop = 0;
+
+    /**
+     * Constructs a new {@code SelectorServer} with the specified server socket channel.
+     *
+     * @param serverSocketChannel The server socket channel used for accepting client connections.
+     * @param ioThreads           The number of event loops (I/O threads) serving the client channels.
+     * @throws IOException If an I/O error occurs while opening the selectors.
+     */
+    public SelectorServer(ServerSocketChannel serverSocketChannel, int ioThreads) throws IOException {
+        super(serverSocketChannel.socket());
+        this.serverSocketChannel = serverSocketChannel;
+        this.eventLoops = new EventLoop[Math.max(1, ioThreads)];
+        Executor commandExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < this.eventLoops.length; i++) {
+            this.eventLoops[i] = new EventLoop(commandExecutor);
+        }
+    }
+
+    /**
+     * Opens a server socket channel bound to the specified port.
+     *
+     * @param port The port on which the server listens for incoming connections.
+     * @return The opened server socket channel.
+     * @throws IOException If an I/O error occurs while opening or binding the channel.
+     */
+    public static ServerSocketChannel openChannel(int port) throws IOException {
+        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(port));
+        return serverSocketChannel;
+    }
+
+    /**
+     * Starts the event loops and accepts client connections, handing each accepted channel
+     * to one of the event loops.
+     */
+    @Override
+    protected void acceptConnections() {
+        for (int i = 0; i < this.eventLoops.length; i++) {
+            Thread thread = new Thread(this.eventLoops[i], "event-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        while (this.serverSocketChannel.isOpen()) {
+            try {
+                SocketChannel channel = this.serverSocketChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop eventLoop = this.eventLoops[this.nextEventLoop];
+                this.nextEventLoop = (this.nextEventLoop + 1) % this.eventLoops.length;
+                eventLoop.execute(() -> eventLoop.register(channel));
+            } catch (Exception e) {
+                if (!this.serverSocketChannel.isOpen()) break;
+                System.err.println("An unexpected error has occurred while accepting a connection!\n" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The {@code EventLoop} class represents a single I/O thread multiplexing many client
+     * channels with its own {@link Selector}. Reads, writes and every task submitted through
+     * {@link #execute(Runnable)} run on the event loop thread, so a channel is never
+     * accessed concurrently. A failing task is reported and doesn't stop the event loop.
+     *
+     * @author Carlos Leite, Sergio Felix
+     * @version 1.0
+     */
+    static class EventLoop implements Runnable {
+        /**
+         * The selector used for multiplexing the client channels.
+         */
+        private final Selector selector;
+        /**
+         * The tasks waiting to run on the event loop thread.
+         */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        /**
+         * The executor running the workers that handle the commands of the clients.
+         */
+        private final Executor commandExecutor;
+
+        /**
+         * Constructs a new {@code EventLoop} with its own selector.
+         *
+         * @param commandExecutor The executor running the workers that handle the commands of the clients.
+         * @throws IOException If an I/O error occurs while opening the selector.
+         */
+        EventLoop(Executor commandExecutor) throws IOException {
+            this.selector = Selector.open();
+            this.commandExecutor = commandExecutor;
+        }
+
+        /**
+         * Submits a task to run on the event loop thread and wakes up the selector.
+         *
+         * @param task The task to run.
+         */
+        void execute(Runnable task) {
+            this.tasks.add(task);
+            this.selector.wakeup();
+        }
+
+        /**
+         * Registers an accepted channel in the selector and starts serving its client.
+         * Must run on the event loop thread.
+         *
+         * @param channel The accepted client channel.
+         */
+        private void register(SocketChannel channel) {
+            try {
+                ChannelConnection connection = new ChannelConnection(channel, this, newOutboundQueue(), this.commandExecutor);
+                ClientHandler handler = new ClientHandler(connection);
+                connection.setKey(channel.register(this.selector, SelectionKey.OP_READ, handler));
+                Logger.log(connection.getAddress(), "Connection", "New connection established.");
+                System.out.printf("[%s %s] New connection!%n", getCurrentTime(), connection.getAddress());
+                synchronized (clients) {
+                    clients.add(handler);
+                }
+                handler.open();
+            } catch (IOException e) {
+                System.err.println("Couldn't register the client channel!\n" + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        /**
+         * Runs the event loop, serving the ready channels and the submitted tasks until the selector is closed.
+         */
+        @Override
+        public void run() {
+            try {
+                while (this.selector.isOpen()) {
+                    this.selector.select();
+                    runTasks();
+                    for (SelectionKey key : this.selector.selectedKeys()) {
+                        handleKey(key);
+                    }
+                    this.selector.selectedKeys().clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                System.err.println("An unexpected error has occurred in the event loop!\n" + e.getMessage());
+            }
+        }
+
+        /**
+         * Runs every task submitted to the event loop.
+         */
+        private void runTasks() {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("An unexpected error has occurred in an event loop task!\n" + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Handles a ready selection key, handing the received lines to the worker of the client and flushing the queued messages.
+         * The client is disconnected if the channel reaches the end of stream or fails. The key is cancelled first,
+         * so the selector stops reporting the channel while the worker of the client gets to the disconnection.
+         *
+         * @param key The ready selection key.
+         */
+        private void handleKey(SelectionKey key) {
+            ClientHandler handler = (ClientHandler) key.attachment();
+            ChannelConnection connection = (ChannelConnection) handler.getConnection();
+
+            try {
+                if (key.isValid() && key.isReadable() && !connection.read(handler::handleCommand)) {
+                    key.cancel();
+                    connection.disconnect();
+                    return;
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.flush();
+                }
+            } catch (Exception e) {
+                key.cancel();
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -2,17 +2,27 @@ package pt.ipp.estg.Server;
 
 import pt.ipp.estg.Entities.Request;
 import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.BackpressurePolicy;
 import pt.ipp.estg.Enums.Role;
+import pt.ipp.estg.Utils.Configuration;
+import pt.ipp.estg.Utils.LogQuery;
 import pt.ipp.estg.Utils.Logger;
+import pt.ipp.estg.Utils.MulticastGroups;
+import pt.ipp.estg.Utils.Resources;
 
 import java.io.*;
-import java.net.InetAddress;
-import java.net.MulticastSocket;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.*;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * The {@code Server} class represents a simple chat server that handles client connections,
@@ -26,57 +36,94 @@ import java.util.*;
  */
 public class Server {
     /**
-     * A mapping of room names to lists of client handlers in each room.
+     * The chat rooms and their members.
      */
-    protected static final Map<String, List<ClientHandler>> rooms = new HashMap<>();
+    protected static final RoomRegistry rooms = openRooms();
     /**
      * A list of client handlers.
      */
     protected static final List<ClientHandler> clients = new ArrayList<>();
     /**
-     * A mapping of request IDs to request objects.
+     * The sessions of the signed-in users, indexed by username.
      */
-    protected static final Map<UUID, Request> requests = new HashMap<>();
+    protected static final SessionRegistry sessions = new SessionRegistry();
     /**
-     * A mapping of usernames to lists of offline messages for each user.
+     * The pending missile launch requests and the totals of accepted and rejected requests, persisted to {@code requests.log}.
      */
-    protected static final Map<String, List<String>> offlineMessages = new HashMap<>();
+    protected static final RequestStore requests = new RequestStore(Path.of(Resources.getPathFromResources("users.json")).resolveSibling("requests.log").toString(), Configuration.getBoolean("requests.fsync", true));
     /**
-     * An object used for synchronization.
+     * The mailboxes of the messages sent to offline users.
      */
-    protected static final Object lock = new Object();
+    protected static final MailboxStore offlineMessages = openMailboxes();
     /**
      * The port on which the server listens for incoming connections.
      */
     private static final int SERVER_PORT = 1024;
     /**
-     * The count of requests accepted by the server.
+     * The formatter used for displaying the current time, shared because it is immutable and thread-safe.
      */
-    protected static int requestsAccepted = 0;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
     /**
-     * The count of requests rejected by the server.
+     * The maximum number of messages waiting to be written to each client.
      */
-    protected static int requestsRejected = 0;
+    private static final int OUTBOUND_QUEUE_CAPACITY = Configuration.getInt("server.outbound-queue-capacity", 1024);
+    /**
+     * The number of bytes waiting to be written to a client above which the backpressure policy is applied.
+     */
+    private static final int OUTBOUND_HIGH_WATER_MARK = Configuration.getInt("server.outbound-high-water-mark", 256 * 1024);
+    /**
+     * The policy applied to clients that go over the outbound high-water mark.
+     */
+    private static final BackpressurePolicy BACKPRESSURE_POLICY = BackpressurePolicy.valueOf(Configuration.getString("server.backpressure-policy", BackpressurePolicy.DropOldest.name()));
+    /**
+     * Whether messages sent to a role or to everyone are delivered through UDP multicast.
+     */
+    private static final boolean MULTICAST_ENABLED = Configuration.getBoolean("server.multicast", false);
+    /**
+     * The maximum number of users and IP addresses listed in the log report.
+     */
+    private static final int LOG_REPORT_TOP = 10;
+    /**
+     * The maximum number of offline messages sent to a client at once when it signs in.
+     */
+    private static final int OFFLINE_MESSAGES_BATCH_SIZE = 64;
     /**
      * The server socket used for accepting client connections.
      */
     protected ServerSocket serverSocket;
     /**
-     * The multicast socket used for handling multicast communication.
+     * The multicast socket used for sending messages to a role or to everyone,
+     * or {@code null} if the multicast delivery is disabled.
      */
-    protected MulticastSocket multicastSocket;
+    protected static MulticastSocket multicastSocket;
     /**
-     * The multicast group address.
+     * The multicast group address of the messages sent to everyone.
      */
-    protected InetAddress group;
+    protected static InetAddress group;
+    /**
+     * The executor used for running the client handlers and connection writers of the blocking transport.
+     */
+    private final Executor handlerExecutor;
 
     /**
-     * Constructs a new {@code Server} with the specified server socket.
+     * Constructs a new {@code Server} with the specified server socket, running each
+     * client handler and connection writer on a new platform thread.
      *
      * @param serverSocket The server socket used for accepting client connections.
      */
     public Server(ServerSocket serverSocket) {
+        this(serverSocket, handler -> new Thread(handler).start());
+    }
+
+    /**
+     * Constructs a new {@code Server} with the specified server socket and client handler executor.
+     *
+     * @param serverSocket    The server socket used for accepting client connections.
+     * @param handlerExecutor The executor used for running each client handler and connection writer.
+     */
+    public Server(ServerSocket serverSocket, Executor handlerExecutor) {
         this.serverSocket = serverSocket;
+        this.handlerExecutor = handlerExecutor;
     }
 
     /**
@@ -85,10 +132,18 @@ public class Server {
      * @param args The command-line arguments (not used in this application).
      */
     public static void main(String[] args) {
+        String transport = Configuration.getString("server.transport", "thread");
+        int ioThreads = Configuration.getInt("server.io-threads", 0);
+
         try (
-                ServerSocket serverSocket = new ServerSocket(SERVER_PORT)
+                ServerSocket serverSocket = transport.equals("selector") ? SelectorServer.openChannel(SERVER_PORT).socket() : new ServerSocket(SERVER_PORT)
         ) {
-            Server server = new Server(serverSocket);
+            Server server = switch (transport) {
+                case "selector" -> new SelectorServer(serverSocket.getChannel(), ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors());
+                case "virtual" -> new Server(serverSocket, Executors.newVirtualThreadPerTaskExecutor());
+                default -> new Server(serverSocket);
+            };
+            System.out.printf("[%s] Server listening on port %s (%s transport)!%n", getCurrentTime(), SERVER_PORT, transport);
             server.start();
         } catch (IOException e) {
             System.err.println("Couldn't get I/O for the connection listen on port " + SERVER_PORT + "!\n" + e.getMessage());
@@ -104,8 +159,41 @@ public class Server {
      *
      * @return The current time as a formatted string.
      */
-    private String getCurrentTime() {
-        return new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date());
+    protected static String getCurrentTime() {
+        return LocalDateTime.now().format(TIME_FORMATTER);
+    }
+
+    /**
+     * Creates the queue of messages waiting to be written to a new client, with the configured
+     * capacity, high-water mark and backpressure policy.
+     *
+     * @return A new outbound queue.
+     */
+    protected static OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(OUTBOUND_QUEUE_CAPACITY, OUTBOUND_HIGH_WATER_MARK, BACKPRESSURE_POLICY);
+    }
+
+    /**
+     * Gets a copy of the connected client handlers. The copy is taken while holding the
+     * {@code clients} monitor, so messages can be written to the clients without holding it.
+     *
+     * @return A copy of the list of client handlers.
+     */
+    protected static List<ClientHandler> getClientsSnapshot() {
+        synchronized (clients) {
+            return new ArrayList<>(clients);
+        }
+    }
+
+    /**
+     * Gets a copy of the pending requests a role can approve, so messages can be written to the clients without
+     * holding the request store. Generals can approve every request, the other roles only the requests sent to them.
+     *
+     * @param role The role.
+     * @return A copy of the entries of the pending requests the role can approve.
+     */
+    protected static List<Map.Entry<UUID, Request>> getRequestsSnapshot(Role role) {
+        return role == Role.General ? requests.snapshot() : requests.snapshot(role);
     }
 
     /**
@@ -118,6 +206,39 @@ public class Server {
         return clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort();
     }
 
+    /**
+     * Loads the registered users into the user directory, so the first sign-in doesn't wait for it.
+     */
+    private void initializeUsers() {
+        System.out.printf("[%s] Loaded %d users!%n", getCurrentTime(), Auth.getUsers().size());
+    }
+
+    /**
+     * Opens the mailboxes configured by the {@code mailbox.*} settings and registers a shutdown hook that
+     * writes the in-memory messages to the mailbox files before the application exits. By default, the
+     * mailbox files are stored in the {@code mailboxes} directory, next to the {@code users.json} resource.
+     *
+     * @return The mailboxes.
+     */
+    private static MailboxStore openMailboxes() {
+        String directoryName = Configuration.getString("mailbox.directory", "");
+        Path directory = directoryName.isEmpty() ? Path.of(Resources.getPathFromResources("users.json")).resolveSibling("mailboxes") : Path.of(directoryName);
+        MailboxStore mailboxes = new MailboxStore(directory, Configuration.getInt("mailbox.memory-tail", 32), Configuration.getInt("mailbox.quota", 1000), TimeUnit.HOURS.toMillis(Configuration.getInt("mailbox.ttl-hours", 168)));
+        Runtime.getRuntime().addShutdownHook(new Thread(mailboxes::spillAll));
+        return mailboxes;
+    }
+
+    /**
+     * Opens the chat rooms: owned by {@code server.room-shards} single-threaded shards chosen by hashing
+     * the room name, or guarded by a lock per room if the number of shards is 0.
+     *
+     * @return The chat rooms.
+     */
+    private static RoomRegistry openRooms() {
+        int shards = Configuration.getInt("server.room-shards", 0);
+        return shards > 0 ? new ShardedRoomRegistry(shards) : new LockedRoomRegistry();
+    }
+
     /**
      * Initializes and starts timers for monitoring active members and displaying pending requests.
      */
@@ -130,30 +251,81 @@ public class Server {
     }
 
     /**
-     * Accepts client connections and spawns a new thread for each connected client.
+     * Accepts client connections and runs the handler of each connected client on the handler executor.
      */
-    private void acceptConnections() {
+    protected void acceptConnections() {
         while (!this.serverSocket.isClosed()) {
             try {
                 Socket clientSocket = this.serverSocket.accept();
                 Logger.log(getClientAddress(clientSocket), "Connection", "New connection established.");
                 System.out.printf("[%s %s] New connection!%n", getCurrentTime(), getClientAddress(clientSocket));
-                ClientHandler handler = new ClientHandler(clientSocket);
-                clients.add(handler);
-                new Thread(handler).start();
+                ClientHandler handler = new ClientHandler(clientSocket, this.handlerExecutor);
+                synchronized (clients) {
+                    clients.add(handler);
+                }
+                this.handlerExecutor.execute(handler);
             } catch (Exception e) {
-                System.err.println("An unexpected error has occurred during server initialization!\n" + e.getMessage());
-                System.exit(1);
+                if (this.serverSocket.isClosed()) break;
+                System.err.println("An unexpected error has occurred while accepting a connection!\n" + e.getMessage());
             }
         }
     }
 
+    /**
+     * Opens the multicast socket used for delivering messages to a role or to everyone, if enabled.
+     * If the socket can't be opened, the messages are delivered through each client connection.
+     */
+    private void initializeMulticast() {
+        if (!MULTICAST_ENABLED) return;
+
+        try {
+            MulticastSocket socket = new MulticastSocket();
+            socket.setTimeToLive(MulticastGroups.TIME_TO_LIVE);
+            socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            NetworkInterface networkInterface = MulticastGroups.getInterface();
+            if (networkInterface != null) socket.setNetworkInterface(networkInterface);
+            group = MulticastGroups.global();
+            multicastSocket = socket;
+            System.out.printf("[%s] Multicast delivery on group %s port %s!%n", getCurrentTime(), group.getHostAddress(), MulticastGroups.PORT);
+        } catch (IOException e) {
+            System.err.println("Couldn't open the multicast socket, messages will be sent to each client!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a message to a multicast group in a single datagram. The datagram starts with
+     * a line holding the username of the sender, so the sender's client can ignore its own messages.
+     *
+     * @param groupAddress The address of the multicast group.
+     * @param sender       The username of the sender.
+     * @param message      The encoded message to send.
+     * @return {@code true} if the message was sent; {@code false} if it must be sent to each client instead.
+     */
+    protected static boolean publish(InetAddress groupAddress, String sender, EncodedMessage message) {
+        if (multicastSocket == null) return false;
+
+        try {
+            ByteArrayOutputStream datagram = new ByteArrayOutputStream(sender.length() + 1 + message.length());
+            datagram.write((sender + "\n").getBytes(StandardCharsets.UTF_8));
+            message.writeTo(datagram);
+            if (datagram.size() > MulticastGroups.MAX_DATAGRAM_SIZE) return false;
+
+            multicastSocket.send(new DatagramPacket(datagram.toByteArray(), datagram.size(), groupAddress, MulticastGroups.PORT));
+            return true;
+        } catch (IOException e) {
+            System.err.println("Couldn't send the multicast message, sending it to each client!\n" + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Starts the server by initializing timers and accepting client connections.
      */
-    private void start() {
+    protected void start() {
         try {
+            initializeUsers();
             initializeTimers();
+            initializeMulticast();
             acceptConnections();
         } catch (Exception e) {
             System.err.println("An unexpected error has occurred during server initialization!\n" + e.getMessage());
@@ -170,468 +342,659 @@ public class Server {
      * @author Your Name
      * @version 1.0
      */
-    private static class ClientHandler implements Runnable {
+    static class ClientHandler implements Runnable {
+        /**
+         * The commands accepted before the user is authenticated.
+         */
+        private static final CommandRegistry AUTHENTICATION_COMMANDS = new CommandRegistry()
+                .register("/sign-up", 5, ClientHandler::handleSignUp)
+                .register("/sign-in", 3, ClientHandler::handleSignIn);
         /**
-         * The socket associated with the connected client.
+         * The commands accepted once the user is authenticated.
          */
-        private final Socket socket;
+        static final CommandRegistry ACTION_COMMANDS = new CommandRegistry()
+                .register("/whisper", 3, ClientHandler::handleWhisper)
+                .register("/say", 3, ClientHandler::handleSay)
+                .register("/all", 2, ClientHandler::handleAll)
+                .register("/room", 3, ClientHandler::handleRoom)
+                .register("/create-room", 2, ClientHandler::handleCreateRoom)
+                .register("/join-room", 2, ClientHandler::handleJoinRoom)
+                .register("/leave-room", 2, ClientHandler::handleLeaveRoom)
+                .register("/list-rooms", 1, ClientHandler::handleListRooms)
+                .register("/list-room", 1, ClientHandler::handleListRooms)
+                .register("/launch-missile", 3, ClientHandler::handleLaunchMissile)
+                .register("/list-requests", 1, ClientHandler::handleListRequests)
+                .register("/accept-request", 2, ClientHandler::handleAcceptRequest)
+                .register("/reject-request", 2, ClientHandler::handleRejectRequest)
+                .register("/promote", 3, ClientHandler::handlePromotion)
+                .register("/demote", 3, ClientHandler::handlePromotion)
+                .register("/search-logs", 2, ClientHandler::handleSearchLogs)
+                .register("/log-report", 1, ClientHandler::handleLogReport)
+                .register("/help", 1, ClientHandler::handleHelp)
+                .register("/quiet", 1, ClientHandler::handleQuiet)
+                .register("/verbose", 1, ClientHandler::handleVerbose);
         /**
-         * The buffered writer used for sending messages to the client.
+         * The connection used for sending messages to the client.
          */
-        private BufferedWriter bufferedWriter;
+        private Connection connection;
         /**
-         * The buffered reader used for reading messages from the client.
+         * The buffered reader used for reading messages from the client when it is served
+         * by a blocking socket; {@code null} when the lines are delivered by an event loop.
          */
         private BufferedReader bufferedReader;
         /**
          * The user associated with the connected client.
          */
         private User user;
+        /**
+         * Whether the client asked for the quiet mode, in which the commands menu is only sent on request.
+         */
+        private boolean quiet;
+        /**
+         * The names of the chat rooms the client is in, so leaving them on disconnection only touches those rooms.
+         */
+        private final Set<String> joinedRooms = ConcurrentHashMap.newKeySet();
+        /**
+         * Whether the handler was closed, so the rooms joined by operations still in flight are left once they complete.
+         */
+        private volatile boolean closed;
 
         /**
          * Constructs a new {@code ClientHandler} for the specified client socket.
          *
-         * @param socket The client socket.
+         * @param socket         The client socket.
+         * @param writerExecutor The executor used for running the writer of the client connection.
+         * @throws IOException If an I/O error occurs while opening the socket streams.
          */
-        public ClientHandler(Socket socket) {
-            this.socket = socket;
-            try {
-                this.bufferedWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
-                this.bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-                this.user = null;
-            } catch (Exception e) {
-                handleException("An unexpected error has occurred during client initialization!", e);
-            }
+        public ClientHandler(Socket socket, Executor writerExecutor) throws IOException {
+            this.connection = new SocketConnection(socket, writerExecutor, newOutboundQueue());
+            this.bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.user = null;
         }
 
         /**
-         * Gets the current time in the format "dd/MM/yyyy HH:mm:ss".
+         * Constructs a new {@code ClientHandler} for the specified connection. The received lines
+         * must be delivered to {@link #handleCommand(String)} by the transport serving the connection.
          *
-         * @return The current time as a formatted string.
+         * @param connection The client connection.
          */
-        private String getCurrentTime() {
-            return new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date());
+        ClientHandler(Connection connection) {
+            this(connection, null);
         }
 
         /**
-         * Gets the client address based on the client socket's IP address and port.
+         * Constructs a new {@code ClientHandler} for the specified connection, already authenticated
+         * as the specified user. Used for driving handlers without a real client, such as in benchmarks.
          *
-         * @param clientSocket The client socket.
+         * @param connection The client connection.
+         * @param user       The authenticated user.
+         */
+        ClientHandler(Connection connection, User user) {
+            this.connection = connection;
+            this.user = user;
+        }
+
+        /**
+         * Gets the connection used for sending messages to the client.
+         *
+         * @return The client connection.
+         */
+        Connection getConnection() {
+            return this.connection;
+        }
+
+        /**
+         * Gets the client address based on the client connection's IP address and port.
+         *
+         * @param connection The client connection.
          * @return The formatted client address.
          */
-        private String getClientAddress(Socket clientSocket) {
-            return clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort();
+        private String getClientAddress(Connection connection) {
+            return connection.getAddress();
         }
 
         /**
-         * Handles an exception by printing an error message and exiting the application.
+         * Handles an exception by printing an error message. Only this client is affected,
+         * the server keeps serving the other clients.
          *
          * @param message The error message to display.
          * @param e       The exception that occurred.
          */
         private void handleException(String message, Exception e) {
             System.err.println(message + "\n" + e.getMessage());
-            System.exit(1);
         }
 
         /**
-         * Executes the client handling logic, including user authentication and message handling.
+         * Executes the client handling logic for a blocking socket, reading every line sent by the
+         * client and handling it until the connection is closed or lost.
          */
         @Override
         public void run() {
             try {
-                authenticateUser();
-                handleAction();
-            } catch (Exception e) {
-                Logger.log(getClientAddress(this.socket), "Disconnection", "Connection was lost.");
-                System.out.printf("[%s %s] Lost connection!%n", getCurrentTime(), getClientAddress(this.socket));
+                open();
+                String command;
+                while ((command = this.bufferedReader.readLine()) != null) {
+                    handleCommand(command);
+                }
+            } catch (Exception ignored) {
             } finally {
-                close();
+                handleDisconnection();
+            }
+        }
+
+        /**
+         * Starts the conversation with the client by sending the authentication commands.
+         */
+        void open() {
+            sendMessageToClient(CommandsMenu.AUTHENTICATION_MENU);
+        }
+
+        /**
+         * Handles a line received from the client. Until the user is authenticated the line is
+         * processed as an authentication command, afterwards as an action command.
+         *
+         * @param command The line received from the client.
+         */
+        void handleCommand(String command) {
+            if (this.user == null) {
+                authenticateUser(command);
+            } else {
+                handleAction(command);
             }
         }
 
         /**
-         * Authenticates the user by processing sign-up or sign-in commands until the user
-         * is successfully authenticated. Invalid commands result in appropriate error messages.
+         * Handles the loss of the connection by logging the disconnection and closing the client handler.
+         */
+        void handleDisconnection() {
+            Logger.log(getClientAddress(this.connection), "Disconnection", "Connection was lost.");
+            System.out.printf("[%s %s] Lost connection!%n", getCurrentTime(), getClientAddress(this.connection));
+            close();
+        }
+
+        /**
+         * Authenticates the user by processing a sign-up or sign-in command. Invalid commands
+         * and failed attempts result in appropriate error messages followed by the authentication commands.
          *
-         * @throws IOException If an I/O error occurs during communication.
+         * @param command The authentication command from the client.
          */
-        private void authenticateUser() throws IOException {
-            boolean isAuthenticated = false;
+        private void authenticateUser(String command) {
+            CommandRegistry.Command authentication = AUTHENTICATION_COMMANDS.lookup(command);
 
-            while (!isAuthenticated) {
-                sendMessageToClient(CommandsMenu.AuthenticationCommands());
-                String command = this.bufferedReader.readLine();
+            if (authentication == null) {
+                sendMessageToClient("Invalid command. Please try again!");
+                sendMessageToClient(CommandsMenu.AUTHENTICATION_MENU);
+                return;
+            }
 
-                if (command.startsWith("/sign-up")) {
-                    handleSignUp(command);
-                } else if (command.startsWith("/sign-in")) {
-                    handleSignIn(command);
-                } else {
-                    sendMessageToClient("Invalid command. Please try again!");
-                    continue;
-                }
+            String[] commandArgs = authentication.parse(command);
+            if (commandArgs != null) authentication.execute(this, commandArgs);
 
-                if (this.user != null) {
-                    handleSuccessfulAuthentication();
-                    isAuthenticated = true;
-                } else {
-                    sendMessageToClient("Authentication failed. Please try again!");
-                }
+            if (this.user != null) {
+                handleSuccessfulAuthentication();
+                sendMessageToClientCommands();
+            } else {
+                sendMessageToClient("Authentication failed. Please try again!");
+                sendMessageToClient(CommandsMenu.AUTHENTICATION_MENU);
             }
         }
 
         /**
-         * Handles a sign-up command by extracting command arguments, validating them,
-         * and invoking the sign-up method. If the command is invalid, it is ignored.
+         * Handles a sign-up command by validating the role and invoking the sign-up method.
+         * If the role is invalid, the command is ignored; if a field is too long to be stored, the user is told which.
          *
-         * @param command The sign-up command from the client.
+         * @param commandArgs The tokens of the sign-up command.
          */
-        private void handleSignUp(String command) {
-            String[] commandArgs = command.split("\\s+", 5);
-
-            if (isInvalidCommand(commandArgs.length, 5)) return;
+        private void handleSignUp(String[] commandArgs) {
             if (isInvalidRole(commandArgs[4])) return;
 
-            this.user = Auth.signUp(commandArgs[1], commandArgs[2], commandArgs[3], commandArgs[4]);
+            try {
+                this.user = Auth.signUp(commandArgs[1], commandArgs[2], commandArgs[3], commandArgs[4]);
+            } catch (IllegalArgumentException e) {
+                sendMessageToClient(e.getMessage() + ". Please try again!");
+            }
         }
 
         /**
-         * Handles a sign-in command by extracting command arguments, validating them,
-         * and invoking the sign-in method. If the command is invalid, it is ignored.
+         * Handles a sign-in command by invoking the sign-in method.
          *
-         * @param command The sign-in command from the client.
+         * @param commandArgs The tokens of the sign-in command.
          */
-        private void handleSignIn(String command) {
-            String[] commandArgs = command.split("\\s+", 3);
-
-            if (isInvalidCommand(commandArgs.length, 3)) return;
-
+        private void handleSignIn(String[] commandArgs) {
             this.user = Auth.signIn(commandArgs[1], commandArgs[2]);
         }
 
         /**
-         * Handles successful user authentication by updating the clients map, logging
-         * the authentication event, and displaying a connection message.
+         * Handles successful user authentication by logging the authentication event,
+         * displaying a connection message, registering the session, and delivering the offline messages.
          */
         private void handleSuccessfulAuthentication() {
-            synchronized (clients) {
-                clients.add(this);
-            }
-            Logger.log(getClientAddress(this.socket), "Authentication", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " authenticated.");
-            System.out.printf("[%s %s] (%s)%s connected!%n", getCurrentTime(), getClientAddress(this.socket), this.user.getRole(), this.user.getUsername());
+            sessions.add(this, this.user.getUsername(), this.user.getRole());
+            Logger.log(getClientAddress(this.connection), "Authentication", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " authenticated.");
+            System.out.printf("[%s %s] (%s)%s connected!%n", getCurrentTime(), getClientAddress(this.connection), this.user.getRole(), this.user.getUsername());
+            sendMulticastGroups();
             handleOfflineMessages();
         }
 
         /**
-         * Handles offline messages for the client. Sends stored messages to the client if any
-         * are present in the offlineMessages map, and removes the messages from the map.
+         * Tells the client which multicast groups to join for receiving the messages sent to its role
+         * and to everyone, if the multicast delivery is enabled. It is sent again whenever the role changes.
          */
-        private void handleOfflineMessages() {
-            synchronized (offlineMessages) {
-                if (offlineMessages.containsKey(this.user.getUsername())) {
-                    List<String> messages = offlineMessages.get(this.user.getUsername());
-                    messages.forEach(this::sendMessageToClient);
-                    offlineMessages.remove(this.user.getUsername());
-                }
+        private void sendMulticastGroups() {
+            if (multicastSocket == null) return;
+
+            try {
+                sendMessageToClient("/multicast-join " + MulticastGroups.PORT + " " + this.user.getUsername() + " " + group.getHostAddress() + " " + MulticastGroups.of(this.user.getRole()).getHostAddress());
+            } catch (UnknownHostException e) {
+                handleException("Couldn't resolve the multicast groups!", e);
             }
         }
 
+        /**
+         * Handles offline messages for the client. Drains the mailbox of the user, sending the stored
+         * messages in batches, each one as a single message to the client.
+         */
+        private void handleOfflineMessages() {
+            offlineMessages.drain(this.user.getUsername(), OFFLINE_MESSAGES_BATCH_SIZE, messages -> sendMessageToClient(String.join("", messages)));
+        }
+
         /**
          * Handles various user actions, such as sending private, role-specific, and global messages,
          * creating, joining, and leaving chat rooms, launching missiles, managing requests, and promoting/demoting users.
+         * The action is found in the {@code ACTION_COMMANDS} registry by the command name.
+         * Unless the client is in quiet mode, the commands menu is sent before handling the command.
          *
-         * @throws IOException If an I/O error occurs during communication.
+         * @param command The action command from the client.
          */
-        private void handleAction() throws IOException {
-            String command;
+        private void handleAction(String command) {
+            if (!this.quiet) sendMessageToClientCommands();
 
-            sendMessageToClientCommands();
+            CommandRegistry.Command action = ACTION_COMMANDS.lookup(command);
+            String[] commandArgs = action != null ? action.parse(command) : null;
 
-            while ((command = bufferedReader.readLine()) != null) {
-                sendMessageToClientCommands();
+            if (commandArgs == null) {
+                sendMessageToClient("Invalid command. Please try again!");
+                return;
+            }
 
-                if (command.startsWith("/whisper")) {
-                    String[] commandArgs = command.split("\\s+", 3);
+            action.execute(this, commandArgs);
+        }
 
-                    if (isInvalidCommand(commandArgs.length, 3)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+        /**
+         * Handles a whisper command by sending a private message to a user, or storing it if the user is offline.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleWhisper(String[] commandArgs) {
+            Logger.log(getClientAddress(this.connection), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to " + commandArgs[1] + ".");
+            unicastMessage(commandArgs[1], commandArgs[2]);
+        }
 
-                    Logger.log(getClientAddress(this.socket), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to " + commandArgs[1] + ".");
-                    unicastMessage(commandArgs[1], commandArgs[2]);
-                } else if (command.startsWith("/say")) {
-                    String[] commandArgs = command.split("\\s+", 3);
+        /**
+         * Handles a say command by sending a message to every user with a specific role.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleSay(String[] commandArgs) {
+            if (isInvalidRole(commandArgs[1])) {
+                sendMessageToClient("Invalid role. Please try again!");
+                return;
+            }
 
-                    if (isInvalidCommand(commandArgs.length, 3)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            Logger.log(getClientAddress(this.connection), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to role " + commandArgs[1] + ".");
+            multicastMessage(Role.valueOf(commandArgs[1]), commandArgs[2]);
+        }
+
+        /**
+         * Handles an all command by sending a message to every connected user.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleAll(String[] commandArgs) {
+            Logger.log(getClientAddress(this.connection), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to everyone.");
+            broadcastMessage(commandArgs[1]);
+        }
 
-                    if (isInvalidRole(commandArgs[1])) {
-                        sendMessageToClient("Invalid role. Please try again!");
-                        continue;
+        /**
+         * Handles a room command by sending a message to the members of a chat room the user is in.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleRoom(String[] commandArgs) {
+            broadcastMessageRoom(commandArgs[1], commandArgs[2], outcome -> {
+                switch (outcome) {
+                    case NoRoom -> sendMessageToClient("The room doesn't exist. Please try again!");
+                    case NotMember -> sendMessageToClient("You're not in the room. Please try again!");
+                    case Done -> Logger.log(getClientAddress(this.connection), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to room " + commandArgs[1] + ".");
+                    default -> {
                     }
+                }
+            });
+        }
+
+        /**
+         * Handles a create-room command by creating a chat room with the user as its first member.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleCreateRoom(String[] commandArgs) {
+            rooms.create(commandArgs[1], this, created -> {
+                if (created) {
+                    joinedRoom(commandArgs[1]);
+                    Logger.log(getClientAddress(this.connection), "Creation", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " created room " + commandArgs[1] + ".");
+                } else {
+                    sendMessageToClient("The room name already exists. Please try again!");
+                }
+            });
+        }
 
-                    Logger.log(getClientAddress(this.socket), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to role " + commandArgs[1] + ".");
-                    multicastMessage(Role.valueOf(commandArgs[1]), commandArgs[2]);
-                } else if (command.startsWith("/all")) {
-                    String[] commandArgs = command.split("\\s+", 2);
+        /**
+         * Handles a join-room command by adding the user to an existing chat room.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleJoinRoom(String[] commandArgs) {
+            rooms.join(commandArgs[1], this, outcome -> {
+                switch (outcome) {
+                    case NoRoom -> sendMessageToClient("The room doesn't exist. Please try again!");
+                    case AlreadyMember -> sendMessageToClient("You're already in the room.");
+                    case Done -> {
+                        joinedRoom(commandArgs[1]);
+                        Logger.log(getClientAddress(this.connection), "Joining", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " joined room " + commandArgs[1] + ".");
+                    }
+                    default -> {
+                    }
+                }
+            });
+        }
 
-                    if (isInvalidCommand(commandArgs.length, 2)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
+        /**
+         * Handles a leave-room command by removing the user from a chat room, removing the room once it is empty.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleLeaveRoom(String[] commandArgs) {
+            rooms.leave(commandArgs[1], this, outcome -> {
+                switch (outcome) {
+                    case NoRoom -> sendMessageToClient("The room doesn't exist. Please try again!");
+                    case NotMember -> sendMessageToClient("You're not in the room.");
+                    case Done -> {
+                        this.joinedRooms.remove(commandArgs[1]);
+                        Logger.log(getClientAddress(this.connection), "Leave", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " left room " + commandArgs[1] + ".");
+                    }
+                    default -> {
                     }
+                }
+            });
+        }
 
-                    Logger.log(getClientAddress(this.socket), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to everyone.");
-                    broadcastMessage(commandArgs[1]);
-                } else if (command.startsWith("/room")) {
-                    String[] commandArgs = command.split("\\s+", 3);
+        /**
+         * Records a chat room the client created or joined, leaving it again if the handler was closed in the meantime.
+         *
+         * @param roomName The name of the chat room.
+         */
+        private void joinedRoom(String roomName) {
+            this.joinedRooms.add(roomName);
+            if (this.closed) rooms.leave(roomName, this, outcome -> {
+            });
+        }
 
-                    if (isInvalidCommand(commandArgs.length, 3)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+        /**
+         * Handles a list-rooms command by sending the available chat rooms and their number of users.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleListRooms(String[] commandArgs) {
+            rooms.sizes(roomSizes -> {
+                if (roomSizes.isEmpty()) {
+                    sendMessageToClient("There are no rooms available.");
+                    return;
+                }
 
-                    synchronized (rooms) {
-                        if (!rooms.containsKey(commandArgs[1])) {
-                            sendMessageToClient("The room doesn't exist. Please try again!");
-                            continue;
-                        }
+                for (Map.Entry<String, Integer> set : roomSizes.entrySet()) {
+                    sendMessageToClient("[Available Rooms]\nRoom: " + set.getKey() + "\nUsers: " + set.getValue());
+                    Logger.log(getClientAddress(this.connection), "Listing", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " listed room " + set.getKey() + ".");
+                }
+            });
+        }
 
-                        if (!rooms.get(commandArgs[1]).contains(this)) {
-                            sendMessageToClient("You're not in the room. Please try again!");
-                            continue;
-                        }
+        /**
+         * Handles a launch-missile command by requesting the approval of the next role, or launching the missile if no approval is needed.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleLaunchMissile(String[] commandArgs) {
+            Role approvalRole = getApprovalRole();
+
+            if (approvalRole != null) {
+                requests.add(UUID.randomUUID(), new Request(this.user, commandArgs[1], commandArgs[2], approvalRole));
+                multicastMessage(approvalRole, "I've sent you a request for a new missile launch to " + commandArgs[1] + " with reason: " + commandArgs[2]);
+            } else {
+                broadcastMessage("Missile launched to " + commandArgs[1] + " with reason: " + commandArgs[2]);
+            }
 
-                        Logger.log(getClientAddress(this.socket), "Message", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " sent a message to room " + commandArgs[1] + ".");
-                        broadcastMessageRoom(commandArgs[1], commandArgs[2]);
-                    }
-                } else if (command.startsWith("/create-room")) {
-                    String[] commandArgs = command.split("\\s+", 2);
+            Logger.log(getClientAddress(this.connection), "Attack", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " launched a missile to " + commandArgs[1] + " with reason: " + commandArgs[2] + ".");
+        }
 
-                    if (isInvalidCommand(commandArgs.length, 2)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+        /**
+         * Handles a list-requests command by sending the pending requests the user is allowed to approve.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleListRequests(String[] commandArgs) {
+            if (this.user.getRole().equals(Role.Private)) {
+                sendMessageToClient("You don't have permission to list requests.");
+                return;
+            }
 
-                    synchronized (rooms) {
-                        if (!rooms.containsKey(commandArgs[1])) {
-                            rooms.put(commandArgs[1], new ArrayList<>());
-                            rooms.get(commandArgs[1]).add(this);
-                            Logger.log(getClientAddress(this.socket), "Creation", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " created room " + commandArgs[1] + ".");
-                        } else {
-                            sendMessageToClient("The room name already exists. Please try again!");
-                        }
-                    }
-                } else if (command.startsWith("/join-room")) {
-                    String[] commandArgs = command.split("\\s+", 2);
+            List<Map.Entry<UUID, Request>> pendingRequests = getRequestsSnapshot(this.user.getRole());
 
-                    if (isInvalidCommand(commandArgs.length, 2)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            if (pendingRequests.isEmpty()) {
+                sendMessageToClient("There are no requests available.");
+                return;
+            }
 
-                    synchronized (rooms) {
-                        if (rooms.containsKey(commandArgs[1])) {
-                            if (rooms.get(commandArgs[1]).contains(this)) {
-                                sendMessageToClient("You're already in the room.");
-                                continue;
-                            }
-                            rooms.get(commandArgs[1]).add(this);
-                            Logger.log(getClientAddress(this.socket), "Joining", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " joined room " + commandArgs[1] + ".");
-                        } else {
-                            sendMessageToClient("The room doesn't exist. Please try again!");
-                        }
-                    }
-                } else if (command.startsWith("/leave-room")) {
-                    String[] commandArgs = command.split("\\s+", 2);
+            for (Map.Entry<UUID, Request> entry : pendingRequests) {
+                sendMessageToClient("[Available Requests]\nID: " + entry.getKey() + "\nUser: " + entry.getValue().getUser().getUsername() + "\nLocation: " + entry.getValue().getLocation() + "\nReason: " + entry.getValue().getReason());
+                Logger.log(getClientAddress(this.connection), "Listing", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " listed requests " + entry.getKey() + ".");
+            }
+        }
 
-                    if (isInvalidCommand(commandArgs.length, 2)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+        /**
+         * Handles an accept-request command by accepting a pending request and launching its missile.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleAcceptRequest(String[] commandArgs) {
+            if (this.user.getRole().equals(Role.Private)) {
+                sendMessageToClient("You don't have permission to accept requests.");
+                return;
+            }
 
-                    synchronized (rooms) {
-                        if (rooms.containsKey(commandArgs[1])) {
-                            if (!rooms.get(commandArgs[1]).contains(this)) {
-                                sendMessageToClient("You're not in the room.");
-                                continue;
-                            }
-                            rooms.get(commandArgs[1]).remove(this);
-                            if (rooms.get(commandArgs[1]).isEmpty()) {
-                                rooms.remove(commandArgs[1]);
-                            }
-                            Logger.log(getClientAddress(this.socket), "Leave", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " left room " + commandArgs[1] + ".");
-                        } else {
-                            sendMessageToClient("The room doesn't exist. Please try again!");
-                        }
-                    }
-                } else if (command.startsWith("/list-room")) {
-                    String[] commandArgs = command.split("\\s+", 1);
+            Map.Entry<UUID, Request> resolved = resolveRequest(commandArgs[1], true);
+            if (resolved == null) return;
 
-                    if (isInvalidCommand(commandArgs.length, 1)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            Request request = resolved.getValue();
+            unicastMessage(request.getUser().getUsername(), "Your missile launch request to " + request.getLocation() + " with reason: " + request.getReason() + " has been accepted!");
+            broadcastMessage("Missile by " + request.getUser().getUsername() + " launched to " + request.getLocation() + " with reason: " + request.getReason());
+            Logger.log(getClientAddress(this.connection), "Accept", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " accepted request " + resolved.getKey() + ".");
+        }
 
-                    synchronized (rooms) {
-                        if (rooms.isEmpty()) {
-                            sendMessageToClient("There are no rooms available.");
-                            continue;
-                        }
+        /**
+         * Handles a reject-request command by rejecting a pending request.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleRejectRequest(String[] commandArgs) {
+            if (this.user.getRole().equals(Role.Private)) {
+                sendMessageToClient("You don't have permission to reject requests.");
+                return;
+            }
 
-                        for (Map.Entry<String, List<ClientHandler>> set : rooms.entrySet()) {
-                            sendMessageToClient("[Available Rooms]\nRoom: " + set.getKey() + "\nUsers: " + set.getValue().size());
-                            Logger.log(getClientAddress(this.socket), "Listing", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " listed room " + set.getKey() + ".");
-                        }
-                    }
-                } else if (command.startsWith("/launch-missile")) {
-                    String[] commandArgs = command.split("\\s+", 3);
+            Map.Entry<UUID, Request> resolved = resolveRequest(commandArgs[1], false);
+            if (resolved == null) return;
 
-                    if (isInvalidCommand(commandArgs.length, 3)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            Request request = resolved.getValue();
+            unicastMessage(request.getUser().getUsername(), "Your missile launch request to " + request.getLocation() + " with reason: " + request.getReason() + " has been rejected!");
+            Logger.log(getClientAddress(this.connection), "Reject", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " rejected request " + resolved.getKey() + ".");
+        }
 
-                    synchronized (requests) {
-                        Role approvalRole = getApprovalRole();
+        /**
+         * Accepts or rejects the pending request with the ID typed by the user, if the user can approve it,
+         * telling the user why otherwise. The request is found by its parsed ID rather than by scanning the requests.
+         *
+         * @param requestId The ID of the request, as typed by the user.
+         * @param accepted  Whether the request is accepted, or rejected.
+         * @return The ID and the resolved request, or {@code null} if it wasn't resolved.
+         */
+        private Map.Entry<UUID, Request> resolveRequest(String requestId, boolean accepted) {
+            UUID id;
+            try {
+                id = UUID.fromString(requestId);
+            } catch (IllegalArgumentException e) {
+                sendMessageToClient("The request doesn't exist. Please try again!");
+                return null;
+            }
 
-                        if (approvalRole != null) {
-                            requests.put(UUID.randomUUID(), new Request(this.user, commandArgs[1], commandArgs[2], approvalRole));
-                            multicastMessage(approvalRole, "I've sent you a request for a new missile launch to " + commandArgs[1] + " with reason: " + commandArgs[2]);
-                        } else {
-                            broadcastMessage("Missile launched to " + commandArgs[1] + " with reason: " + commandArgs[2]);
-                        }
-                    }
+            Request request = requests.get(id);
+            if (request == null) {
+                sendMessageToClient("The request doesn't exist. Please try again!");
+                return null;
+            }
 
-                    Logger.log(getClientAddress(this.socket), "Attack", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " launched a missile to " + commandArgs[1] + " with reason: " + commandArgs[2] + ".");
-                } else if (command.startsWith("/list-requests")) {
-                    String[] commandArgs = command.split("\\s+", 1);
+            if (!request.getApproval().equals(this.user.getRole()) && !this.user.getRole().equals(Role.General)) {
+                sendMessageToClient("You don't have permission to " + (accepted ? "accept" : "reject") + " this request. Please try again!");
+                return null;
+            }
 
-                    if (isInvalidCommand(commandArgs.length, 1)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            if (requests.resolve(id, accepted) == null) {
+                sendMessageToClient("The request has already been resolved. Please try again!");
+                return null;
+            }
 
-                    if (this.user.getRole().equals(Role.Private)) {
-                        sendMessageToClient("You don't have permission to list requests.");
-                        continue;
-                    }
+            return Map.entry(id, request);
+        }
 
-                    synchronized (requests) {
-                        if (requests.isEmpty()) {
-                            sendMessageToClient("There are no requests available.");
-                            continue;
-                        }
-
-                        for (Map.Entry<UUID, Request> entry : requests.entrySet()) {
-                            if (entry.getValue().getApproval().equals(this.user.getRole()) || this.user.getRole().equals(Role.General)) {
-                                sendMessageToClient("[Available Requests]\nID: " + entry.getKey() + "\nUser: " + entry.getValue().getUser().getUsername() + "\nLocation: " + entry.getValue().getLocation() + "\nReason: " + entry.getValue().getReason());
-                                Logger.log(getClientAddress(this.socket), "Listing", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " listed requests " + entry.getKey() + ".");
-                            }
-                        }
-                    }
-                } else if (command.startsWith("/accept-request")) {
-                    String[] commandArgs = command.split("\\s+", 2);
+        /**
+         * Handles a promote or demote command by changing the role of a connected user, in every session of the user.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handlePromotion(String[] commandArgs) {
+            if (isInvalidRole(commandArgs[2])) {
+                sendMessageToClient("Invalid role. Please try again!");
+                return;
+            }
 
-                    if (isInvalidCommand(commandArgs.length, 2)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            if (!this.user.getRole().equals(Role.General)) {
+                sendMessageToClient("You don't have permission to promote.");
+                return;
+            }
 
-                    if (this.user.getRole().equals(Role.Private)) {
-                        sendMessageToClient("You don't have permission to accept requests.");
-                        continue;
-                    }
+            Set<ClientHandler> userSessions = sessions.sessionsOf(commandArgs[1]);
 
-                    synchronized (requests) {
-                        for (Map.Entry<UUID, Request> entry : requests.entrySet()) {
-                            if (entry.getKey().toString().equals(commandArgs[1])) {
-                                if (entry.getValue().getApproval().equals(this.user.getRole()) || this.user.getRole().equals(Role.General)) {
-                                    synchronized (lock) {
-                                        requestsAccepted++;
-                                    }
-                                    unicastMessage(entry.getValue().getUser().getUsername(), "Your missile launch request to " + entry.getValue().getLocation() + " with reason: " + entry.getValue().getReason() + " has been accepted!");
-                                    broadcastMessage("Missile by " + entry.getValue().getUser().getUsername() + " launched to " + entry.getValue().getLocation() + " with reason: " + entry.getValue().getReason());
-                                    Logger.log(getClientAddress(this.socket), "Accept", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " accepted request " + entry.getKey() + ".");
-                                } else {
-                                    sendMessageToClient("You don't have permission to accept this request. Please try again!");
-                                }
-                            } else {
-                                sendMessageToClient("The request doesn't exist. Please try again!");
-                            }
-                        }
-                    }
-                } else if (command.startsWith("/reject-request")) {
-                    String[] commandArgs = command.split("\\s+", 2);
+            if (userSessions.isEmpty()) {
+                sendMessageToClient("The user doesn't exist. Please try again!");
+                return;
+            }
 
-                    if (isInvalidCommand(commandArgs.length, 2)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            Role role = Role.valueOf(commandArgs[2]);
+            for (ClientHandler client : userSessions) {
+                // Sessions may hold their own copy of the user, depending on the user directory.
+                if (client.user.getRole() != role) Auth.getUsers().changeRole(client.user, role);
+                sessions.changeRole(client, role);
+                client.sendMulticastGroups();
+            }
+            Logger.log(getClientAddress(this.connection), (commandArgs[0].equals("/promote") ? "Promote" : "Demote"), "User (" + this.user.getRole() + ")" + this.user.getUsername() + " " + (commandArgs[0].equals("/promote") ? "promoted" : "demoted") + " user " + commandArgs[1] + " to " + commandArgs[2] + ".");
+        }
 
-                    if (this.user.getRole().equals(Role.Private)) {
-                        sendMessageToClient("You don't have permission to reject requests.");
-                        continue;
-                    }
+        /**
+         * Handles a search-logs command by sending the most recent audit log entries matching the filters.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleSearchLogs(String[] commandArgs) {
+            if (!this.user.getRole().equals(Role.General)) {
+                sendMessageToClient("You don't have permission to search the logs.");
+                return;
+            }
 
-                    synchronized (requests) {
-                        for (Map.Entry<UUID, Request> entry : requests.entrySet()) {
-                            if (entry.getKey().toString().equals(commandArgs[1])) {
-                                if (entry.getValue().getApproval().equals(this.user.getRole()) || this.user.getRole().equals(Role.General)) {
-                                    synchronized (lock) {
-                                        requestsRejected++;
-                                    }
-                                    unicastMessage(entry.getValue().getUser().getUsername(), "Your missile launch request to " + entry.getValue().getLocation() + " with reason: " + entry.getValue().getReason() + " has been rejected!");
-                                    Logger.log(getClientAddress(this.socket), "Reject", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " rejected request " + entry.getKey() + ".");
-                                } else {
-                                    sendMessageToClient("You don't have permission to reject this request. Please try again!");
-                                }
-                            } else {
-                                sendMessageToClient("The request doesn't exist. Please try again!");
-                            }
-                        }
-                    }
-                } else if (command.startsWith("/promote") || command.startsWith("/demote")) {
-                    String[] commandArgs = command.split("\\s+", 3);
+            LogQuery query;
+            try {
+                query = LogQuery.parse(commandArgs[1]);
+            } catch (IllegalArgumentException e) {
+                sendMessageToClient(e.getMessage() + ". Please try again!");
+                return;
+            }
 
-                    if (isInvalidCommand(commandArgs.length, 3)) {
-                        sendMessageToClient("Invalid command. Please try again!");
-                        continue;
-                    }
+            List<Logger.LogEntry> entries;
+            try {
+                entries = Logger.queryLogs(query);
+            } catch (IOException e) {
+                System.err.println("Couldn't search the logs!\n" + e.getMessage());
+                sendMessageToClient("Couldn't search the logs. Please try again!");
+                return;
+            }
 
-                    if (isInvalidRole(commandArgs[2])) {
-                        sendMessageToClient("Invalid role. Please try again!");
-                        continue;
-                    }
+            StringBuilder result = new StringBuilder("[Logs] ").append(entries.size()).append(" entries found.");
+            for (Logger.LogEntry entry : entries) {
+                result.append("\n").append(entry.dateTime).append(" ").append(entry.ipAddress).append(" ").append(entry.actionType).append(": ").append(entry.message);
+            }
+            sendMessageToClient(result.toString());
+            Logger.log(getClientAddress(this.connection), "Search", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " searched the logs with " + commandArgs[1] + ".");
+        }
 
-                    if (!this.user.getRole().equals(Role.General)) {
-                        sendMessageToClient("You don't have permission to promote.");
-                        continue;
-                    }
+        /**
+         * Handles a log-report command by sending a summary of the audit log. The report is generated
+         * in the background, so a long report doesn't hold up the commands of other clients.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleLogReport(String[] commandArgs) {
+            if (!this.user.getRole().equals(Role.General)) {
+                sendMessageToClient("You don't have permission to see the log report.");
+                return;
+            }
 
-                    synchronized (clients) {
-                        boolean userFound = false;
-
-                        for (ClientHandler client : clients) {
-                            if (client.user.getUsername().equals(commandArgs[1])) {
-                                client.user.setRole(Role.valueOf(commandArgs[2]));
-                                Logger.log(getClientAddress(this.socket), (command.startsWith("/promote") ? "Promote" : "Demote"), "User (" + this.user.getRole() + ")" + this.user.getUsername() + " " + (command.startsWith("/promote") ? "promoted" : "demoted") + " user " + commandArgs[1] + " to " + commandArgs[2] + ".");
-                                userFound = true;
-                                break;
-                            }
-                        }
-
-                        if (!userFound) {
-                            sendMessageToClient("The user doesn't exist. Please try again!");
-                        }
-                    }
-                } else {
-                    sendMessageToClient("Invalid command. Please try again!");
+            CompletableFuture.runAsync(() -> {
+                try {
+                    sendMessageToClient(Logger.reportLogs().toSummary(LOG_REPORT_TOP));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Couldn't generate the log report!\n" + e.getMessage());
+                    sendMessageToClient("Couldn't generate the log report. Please try again!");
                 }
-            }
+            });
+            Logger.log(getClientAddress(this.connection), "Report", "User (" + this.user.getRole() + ")" + this.user.getUsername() + " requested the log report.");
+        }
+
+        /**
+         * Handles a help command by sending the commands menu, which a client in quiet mode
+         * doesn't receive otherwise.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleHelp(String[] commandArgs) {
+            if (this.quiet) sendMessageToClientCommands();
+        }
+
+        /**
+         * Handles a quiet command by switching the client to the quiet mode, in which
+         * the commands menu is only sent in reply to the help command.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleQuiet(String[] commandArgs) {
+            this.quiet = true;
+            sendMessageToClient("Quiet mode on. Use /help to see the commands.");
+        }
+
+        /**
+         * Handles a verbose command by switching the client back to receiving the commands menu after every command.
+         *
+         * @param commandArgs The tokens of the command.
+         */
+        private void handleVerbose(String[] commandArgs) {
+            this.quiet = false;
         }
 
         /**
@@ -650,12 +1013,11 @@ public class Server {
         }
 
         /**
-         * Sends available commands related to messages, offensive actions, and management to the client.
+         * Sends available commands related to messages, offensive actions, management and the session
+         * to the client, as a single pre-encoded message.
          */
         private void sendMessageToClientCommands() {
-            sendMessageToClient(CommandsMenu.MessageCommands());
-            sendMessageToClient(CommandsMenu.OffensiveCommands());
-            sendMessageToClient(CommandsMenu.ManagementCommands());
+            sendMessageToClient(CommandsMenu.ACTION_MENU);
         }
 
         /**
@@ -669,105 +1031,86 @@ public class Server {
         }
 
         /**
-         * Checks if the command arguments length is valid.
+         * Sends a message to the connected client.
          *
-         * @param commandArgsLength The length of command arguments.
-         * @param maxArgsLength     The maximum allowed length of command arguments.
-         * @return {@code true} if the length is invalid, {@code false} otherwise.
+         * @param message The message to send.
          */
-        private boolean isInvalidCommand(int commandArgsLength, int maxArgsLength) {
-            return commandArgsLength != maxArgsLength;
+        private void sendMessageToClient(String message) {
+            this.connection.send(message);
         }
 
         /**
-         * Sends a message to the connected client.
+         * Sends an already encoded message to the connected client.
          *
-         * @param message The message to send.
+         * @param message The encoded message to send.
          */
-        private void sendMessageToClient(String message) {
-            try {
-                this.bufferedWriter.write(message);
-                this.bufferedWriter.newLine();
-                this.bufferedWriter.flush();
-            } catch (Exception e) {
-                handleException("An unexpected error has occurred during sending message to client!", e);
-            }
+        private void sendMessageToClient(EncodedMessage message) {
+            this.connection.send(message);
         }
 
         /**
-         * Handles sending private messages to a specific user.
+         * Handles sending private messages to every session of a specific user, found in the session registry.
          *
          * @param username The username of the recipient.
          * @param message  The message to send.
          */
         private void unicastMessage(String username, String message) {
-            synchronized (clients) {
-                boolean userOnline = false;
-
-                for (ClientHandler client : clients) {
-                    if (client.user.getUsername().equals(username)) {
-                        userOnline = true;
-                        try {
-                            client.bufferedWriter.write("[%s] [Whisper] (%s)%s: %s%n".formatted(getCurrentTime(), this.user.getRole(), this.user.getUsername(), message));
-                            client.bufferedWriter.newLine();
-                            client.bufferedWriter.flush();
-                        } catch (Exception e) {
-                            handleException("An unexpected error has occurred during sending message to client!", e);
-                        }
-                    }
+            EncodedMessage encodedMessage = null;
+
+            for (ClientHandler client : sessions.sessionsOf(username)) {
+                if (encodedMessage == null) {
+                    encodedMessage = EncodedMessage.chat("[%s] [Whisper] (%s)%s: %s%n".formatted(getCurrentTime(), this.user.getRole(), this.user.getUsername(), message));
                 }
+                client.connection.send(encodedMessage);
+            }
 
-                if (!userOnline) {
-                    synchronized (offlineMessages) {
-                        if (!offlineMessages.containsKey(username)) {
-                            offlineMessages.put(username, new ArrayList<>());
-                        }
-                        offlineMessages.get(username).add("[%s] [Say] (%s)%s: %s%n".formatted(getCurrentTime(), this.user.getRole(), this.user.getUsername(), message));
-                    }
+            if (encodedMessage == null) {
+                if (offlineMessages.deposit(username, "[%s] [Say] (%s)%s: %s%n".formatted(getCurrentTime(), this.user.getRole(), this.user.getUsername(), message))) {
                     sendMessageToClient("The user is offline. Your message will be sent when the user is online!");
+                } else {
+                    sendMessageToClient("The user is offline and their mailbox is full. Your message wasn't stored!");
                 }
             }
         }
 
         /**
-         * Handles broadcasting messages to users with a specific role.
+         * Handles broadcasting messages to users with a specific role, found in the role index of the
+         * session registry. With the multicast delivery enabled, the message is sent once to the role
+         * group instead of to each client.
          *
          * @param role    The role of the recipients.
          * @param message The message to broadcast.
          */
-        private void multicastMessage(Role role, String message) {
-            synchronized (clients) {
-                for (ClientHandler client : clients) {
-                    if (client.user.getRole().equals(role) && client != this) {
-                        try {
-                            client.bufferedWriter.write("[%s] [Rank %s] (%s)%s: %s%n".formatted(getCurrentTime(), role.toString(), this.user.getRole(), this.user.getUsername(), message));
-                            client.bufferedWriter.newLine();
-                            client.bufferedWriter.flush();
-                        } catch (Exception e) {
-                            handleException("An unexpected error has occurred during broadcasting message!", e);
-                        }
-                    }
+        void multicastMessage(Role role, String message) {
+            EncodedMessage encodedMessage = EncodedMessage.chat("[%s] [Rank %s] (%s)%s: %s%n".formatted(getCurrentTime(), role.toString(), this.user.getRole(), this.user.getUsername(), message));
+
+            try {
+                if (publish(MulticastGroups.of(role), this.user.getUsername(), encodedMessage)) return;
+            } catch (UnknownHostException e) {
+                handleException("Couldn't resolve the multicast group of role " + role + "!", e);
+            }
+
+            for (ClientHandler client : sessions.sessionsWith(role)) {
+                if (client != this) {
+                    client.connection.send(encodedMessage);
                 }
             }
         }
 
         /**
-         * Handles broadcasting messages to all connected clients except the sender.
+         * Handles broadcasting messages to all connected clients except the sender. With the multicast
+         * delivery enabled, the message is sent once to the global group instead of to each client.
          *
          * @param message The message to broadcast.
          */
-        private void broadcastMessage(String message) {
-            synchronized (clients) {
-                for (ClientHandler client : clients) {
-                    if (client != this) {
-                        try {
-                            client.bufferedWriter.write("[%s] [All] (%s)%s: %s%n".formatted(getCurrentTime(), this.user.getRole(), this.user.getUsername(), message));
-                            client.bufferedWriter.newLine();
-                            client.bufferedWriter.flush();
-                        } catch (Exception e) {
-                            handleException("An unexpected error has occurred during broadcasting message!", e);
-                        }
-                    }
+        void broadcastMessage(String message) {
+            EncodedMessage encodedMessage = EncodedMessage.chat("[%s] [All] (%s)%s: %s%n".formatted(getCurrentTime(), this.user.getRole(), this.user.getUsername(), message));
+
+            if (publish(group, this.user.getUsername(), encodedMessage)) return;
+
+            for (ClientHandler client : getClientsSnapshot()) {
+                if (client != this) {
+                    client.connection.send(encodedMessage);
                 }
             }
         }
@@ -775,46 +1118,33 @@ public class Server {
         /**
          * Handles broadcasting messages to all clients in a specific chat room.
          *
+         * The message is encoded once, and the registry delivers it if the user is in the room.
+         *
          * @param roomName The name of the chat room.
          * @param message  The message to broadcast.
+         * @param done     The callback told whether the message was sent, or why it wasn't.
          */
-        private void broadcastMessageRoom(String roomName, String message) {
-            synchronized (rooms) {
-                for (ClientHandler client : rooms.get(roomName)) {
-                        if (client != this) {
-                            try {
-                                client.bufferedWriter.write("[%s] [Room %s] (%s)%s: %s%n".formatted(getCurrentTime(), roomName, this.user.getRole(), this.user.getUsername(), message));
-                                client.bufferedWriter.newLine();
-                                client.bufferedWriter.flush();
-                            } catch (Exception e) {
-                                handleException("An unexpected error has occurred during broadcasting message!", e);
-                            }
-                        }
-                    }
-            }
+        private void broadcastMessageRoom(String roomName, String message, Consumer<RoomRegistry.Outcome> done) {
+            EncodedMessage encodedMessage = EncodedMessage.chat("[%s] [Room %s] (%s)%s: %s%n".formatted(getCurrentTime(), roomName, this.user.getRole(), this.user.getUsername(), message));
+            rooms.send(roomName, this, encodedMessage, done);
         }
 
         /**
-         * Closes the client handler by closing the socket, buffered writer, and buffered reader.
+         * Closes the client handler by closing the connection and buffered reader.
          */
         private void close() {
             try {
-                if (this.socket != null) this.socket.close();
-                if (this.bufferedWriter != null) this.bufferedWriter.close();
+                if (this.connection != null) this.connection.close();
                 if (this.bufferedReader != null) this.bufferedReader.close();
-                synchronized (rooms) {
-                    for (Map.Entry<String, List<ClientHandler>> entry : rooms.entrySet()) {
-                        if (entry.getValue().contains(this)) {
-                            entry.getValue().remove(this);
-                            if (entry.getValue().isEmpty()) {
-                                rooms.remove(entry.getKey());
-                            }
-                        }
-                    }
+                this.closed = true;
+                for (String roomName : this.joinedRooms) {
+                    rooms.leave(roomName, this, outcome -> {
+                    });
                 }
                 synchronized (clients) {
                     clients.remove(this);
                 }
+                if (this.user != null) sessions.remove(this, this.user.getUsername());
             } catch (IOException e) {
                 handleException("Couldn't close buffered writer buffered reader & socket!", e);
             } catch (Exception e) {
@@ -835,23 +1165,21 @@ public class Server {
      */
     private class ActiveMembersTask extends TimerTask {
         /**
-         * Executes the task, notifying active users about the total number of active users.
+         * Executes the task, notifying active users about the total number of active users
+         * and displaying the backpressure counters.
          */
         @Override
         public void run() {
+            System.out.printf("[%s] [SERVER] Backpressure (%s): %s%n", getCurrentTime(), BACKPRESSURE_POLICY, BackpressureStats.summary());
+
+            int activeClients;
             synchronized (clients) {
-                for (ClientHandler client : clients) {
-                    if (client.user != null && client.user.getRole().equals(Role.General)) {
-                        try {
-                            client.bufferedWriter.write("[%s] [SERVER] Active users: %s%n".formatted(getCurrentTime(), clients.size()));
-                            client.bufferedWriter.newLine();
-                            client.bufferedWriter.flush();
-                        } catch (Exception e) {
-                            System.err.println("An unexpected error has occurred during broadcasting message!\n" + e.getMessage());
-                            System.exit(1);
-                        }
-                    }
-                }
+                activeClients = clients.size();
+            }
+            EncodedMessage encodedMessage = EncodedMessage.status("active-users", "[%s] [SERVER] Active users: %s%n".formatted(getCurrentTime(), activeClients));
+
+            for (ClientHandler client : sessions.sessionsWith(Role.General)) {
+                client.connection.send(encodedMessage);
             }
         }
     }
@@ -872,17 +1200,10 @@ public class Server {
          */
         @Override
         public void run() {
-            synchronized (clients) {
-                for (ClientHandler client : clients) {
-                    try {
-                        client.bufferedWriter.write("[%s] [SERVER] Requests pending: %s, Requests accepted: %s, Requests rejected: %s%n".formatted(getCurrentTime(), requests.size(), requestsAccepted, requestsRejected));
-                        client.bufferedWriter.newLine();
-                        client.bufferedWriter.flush();
-                    } catch (Exception e) {
-                        System.err.println("An unexpected error has occurred during broadcasting message!\n" + e.getMessage());
-                        System.exit(1);
-                    }
-                }
+            EncodedMessage encodedMessage = EncodedMessage.status("requests", "[%s] [SERVER] Requests pending: %s, Requests accepted: %s, Requests rejected: %s%n".formatted(getCurrentTime(), requests.pendingCount(), requests.acceptedCount(), requests.rejectedCount()));
+
+            for (ClientHandler client : getClientsSnapshot()) {
+                client.connection.send(encodedMessage);
             }
         }
     }
@@ -0,0 +1,121 @@
+package pt.ipp.estg.Server;
+
+import pt.ipp.estg.Enums.Role;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * The {@code SessionRegistry} class indexes the client handlers of the signed-in users by username,
+ * so the sessions of a user are found with a single lookup, whatever the number of online users.
+ * A user may be signed in from several connections, so each username maps to a set of sessions.
+ * The sessions are also indexed by the role of their user, so the messages sent to a role only
+ * touch its members.
+ * <p>
+ * The username index is a concurrent map of copy-on-write sets: looking up and iterating the sessions
+ * of a user never locks, and adding or removing a session only locks the entry of its user. Each role
+ * has a concurrent set of sessions, which is iterated without locking. A session is added to, moved
+ * between and removed from the role sets while holding the session, so it is always in the set of
+ * exactly one role while signed in, even if it disconnects while being promoted.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class SessionRegistry {
+    /**
+     * The sessions of the signed-in users by username.
+     */
+    private final Map<String, Set<Server.ClientHandler>> byUsername = new ConcurrentHashMap<>();
+    /**
+     * The sessions of the signed-in users by role.
+     */
+    private final Map<Role, Set<Server.ClientHandler>> byRole = new EnumMap<>(Role.class);
+    /**
+     * The role each session is indexed under.
+     */
+    private final Map<Server.ClientHandler, Role> roles = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code SessionRegistry} with an empty set of sessions for every role.
+     */
+    SessionRegistry() {
+        for (Role role : Role.values()) this.byRole.put(role, ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Registers the session of a client handler once its user signed in.
+     *
+     * @param session  The client handler.
+     * @param username The username of its user.
+     * @param role     The role of its user.
+     */
+    void add(Server.ClientHandler session, String username, Role role) {
+        this.byUsername.compute(username, (key, sessions) -> {
+            if (sessions == null) sessions = new CopyOnWriteArraySet<>();
+            sessions.add(session);
+            return sessions;
+        });
+
+        synchronized (session) {
+            this.roles.put(session, role);
+            this.byRole.get(role).add(session);
+        }
+    }
+
+    /**
+     * Removes the session of a client handler, removing the entry of its user once it has no sessions left.
+     *
+     * @param session  The client handler.
+     * @param username The username of its user.
+     */
+    void remove(Server.ClientHandler session, String username) {
+        this.byUsername.computeIfPresent(username, (key, sessions) -> sessions.remove(session) && sessions.isEmpty() ? null : sessions);
+
+        synchronized (session) {
+            Role role = this.roles.remove(session);
+            if (role != null) this.byRole.get(role).remove(session);
+        }
+    }
+
+    /**
+     * Moves a session to the set of its new role, after its user was promoted or demoted.
+     * A session that was already removed isn't added again.
+     *
+     * @param session The client handler.
+     * @param role    The new role of its user.
+     */
+    void changeRole(Server.ClientHandler session, Role role) {
+        synchronized (session) {
+            Role previous = this.roles.get(session);
+            if (previous == null || previous == role) return;
+
+            this.byRole.get(previous).remove(session);
+            this.roles.put(session, role);
+            this.byRole.get(role).add(session);
+        }
+    }
+
+    /**
+     * Gets the sessions of a user.
+     *
+     * @param username The username of the user.
+     * @return The sessions of the user, empty if the user isn't signed in.
+     */
+    Set<Server.ClientHandler> sessionsOf(String username) {
+        return this.byUsername.getOrDefault(username, Set.of());
+    }
+
+    /**
+     * Gets the sessions of the users with a role. The set is a live view, iterated without locking.
+     *
+     * @param role The role.
+     * @return The sessions of the users with the role.
+     */
+    Set<Server.ClientHandler> sessionsWith(Role role) {
+        return Collections.unmodifiableSet(this.byRole.get(role));
+    }
+}
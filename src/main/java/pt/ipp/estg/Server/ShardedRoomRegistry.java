@@ -0,0 +1,162 @@
+package pt.ipp.estg.Server;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * The {@code ShardedRoomRegistry} class is a {@link RoomRegistry} in which each room is owned by one of
+ * K shards, chosen by hashing the room name. Each shard is a single thread with the rooms it owns, and
+ * every operation on a room is a task run by its shard, so the rooms need no locks, the operations on
+ * a room are applied in the order they were made, and the rooms of different shards are served in
+ * parallel, up to the number of shards.
+ * <p>
+ * The callbacks run on the thread of the shard, so they must not block.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class ShardedRoomRegistry implements RoomRegistry {
+    /**
+     * The threads of the shards.
+     */
+    private final ExecutorService[] shards;
+    /**
+     * The rooms owned by each shard, by name, each map only used by the thread of its shard.
+     */
+    private final List<Map<String, Set<Server.ClientHandler>>> rooms;
+
+    /**
+     * Constructs a new {@code ShardedRoomRegistry} with the specified number of shards.
+     *
+     * @param shardCount The number of shards.
+     */
+    ShardedRoomRegistry(int shardCount) {
+        this.shards = new ExecutorService[Math.max(1, shardCount)];
+        this.rooms = new ArrayList<>(this.shards.length);
+
+        for (int i = 0; i < this.shards.length; i++) {
+            String threadName = "room-shard-" + i;
+            this.shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.rooms.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void create(String name, Server.ClientHandler creator, Consumer<Boolean> done) {
+        run(name, rooms -> {
+            if (rooms.containsKey(name)) {
+                done.accept(false);
+                return;
+            }
+
+            Set<Server.ClientHandler> members = new LinkedHashSet<>();
+            members.add(creator);
+            rooms.put(name, members);
+            done.accept(true);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void join(String name, Server.ClientHandler member, Consumer<Outcome> done) {
+        run(name, rooms -> {
+            Set<Server.ClientHandler> members = rooms.get(name);
+            if (members == null) done.accept(Outcome.NoRoom);
+            else done.accept(members.add(member) ? Outcome.Done : Outcome.AlreadyMember);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void leave(String name, Server.ClientHandler member, Consumer<Outcome> done) {
+        run(name, rooms -> {
+            Set<Server.ClientHandler> members = rooms.get(name);
+            if (members == null) {
+                done.accept(Outcome.NoRoom);
+            } else if (!members.remove(member)) {
+                done.accept(Outcome.NotMember);
+            } else {
+                if (members.isEmpty()) rooms.remove(name);
+                done.accept(Outcome.Done);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(String name, Server.ClientHandler sender, EncodedMessage message, Consumer<Outcome> done) {
+        run(name, rooms -> {
+            Set<Server.ClientHandler> members = rooms.get(name);
+            if (members == null) {
+                done.accept(Outcome.NoRoom);
+            } else if (!members.contains(sender)) {
+                done.accept(Outcome.NotMember);
+            } else {
+                for (Server.ClientHandler member : members) {
+                    if (member != sender) member.getConnection().send(message);
+                }
+                done.accept(Outcome.Done);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each shard counts the members of its rooms, and the counts are merged once every shard is done.
+     */
+    @Override
+    public void sizes(Consumer<Map<String, Integer>> done) {
+        List<CompletableFuture<Map<String, Integer>>> partialSizes = new ArrayList<>(this.shards.length);
+
+        for (int i = 0; i < this.shards.length; i++) {
+            Map<String, Set<Server.ClientHandler>> rooms = this.rooms.get(i);
+            partialSizes.add(CompletableFuture.supplyAsync(() -> {
+                Map<String, Integer> sizes = new HashMap<>();
+                rooms.forEach((name, members) -> sizes.put(name, members.size()));
+                return sizes;
+            }, this.shards[i]));
+        }
+
+        CompletableFuture.allOf(partialSizes.toArray(CompletableFuture<?>[]::new)).thenRun(() -> {
+            Map<String, Integer> sizes = new TreeMap<>();
+            for (CompletableFuture<Map<String, Integer>> partial : partialSizes) sizes.putAll(partial.join());
+            done.accept(sizes);
+        });
+    }
+
+    /**
+     * Runs an operation on the shard owning a room, with the rooms of the shard.
+     * An exception thrown by the operation only affects that operation.
+     *
+     * @param name      The name of the room.
+     * @param operation The operation.
+     */
+    private void run(String name, Consumer<Map<String, Set<Server.ClientHandler>>> operation) {
+        int shard = Math.floorMod(name.hashCode(), this.shards.length);
+        Map<String, Set<Server.ClientHandler>> rooms = this.rooms.get(shard);
+
+        this.shards[shard].execute(() -> {
+            try {
+                operation.accept(rooms);
+            } catch (RuntimeException e) {
+                System.err.println("An unexpected error has occurred in room " + name + "!\n" + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package pt.ipp.estg.Server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@code SocketConnection} class is a {@link Connection} backed by a blocking {@link Socket}.
+ * Messages are added to a bounded outbound queue and written to the socket by a dedicated writer,
+ * so a sender never blocks on a slow client. The writer drains every queued message before
+ * flushing, which batches the writes of bursts into a single flush. Messages are queued already
+ * encoded, so the bytes of a broadcast are shared by every recipient.
+ * <p>
+ * If the client isn't reading fast enough, the backpressure policy of the queue decides which
+ * messages are discarded and whether the connection is closed.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+class SocketConnection implements Connection {
+    /**
+     * The message queued to tell the writer that the connection was closed.
+     */
+    private static final EncodedMessage CLOSE_SIGNAL = EncodedMessage.of("");
+    /**
+     * The socket associated with the connected client.
+     */
+    private final Socket socket;
+    /**
+     * The buffered output stream used for sending messages to the client.
+     */
+    private final OutputStream outputStream;
+    /**
+     * The formatted address of the connected client.
+     */
+    private final String address;
+    /**
+     * The messages waiting to be written to the client.
+     */
+    private final OutboundQueue outbound;
+    /**
+     * Whether the connection has been closed.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * Constructs a new {@code SocketConnection} for the specified client socket and starts its writer.
+     *
+     * @param socket         The client socket.
+     * @param writerExecutor The executor used for running the writer of the connection.
+     * @param outbound       The queue of messages waiting to be written to the client.
+     * @throws IOException If an I/O error occurs while opening the socket output stream.
+     */
+    SocketConnection(Socket socket, Executor writerExecutor, OutboundQueue outbound) throws IOException {
+        this.socket = socket;
+        this.outputStream = new BufferedOutputStream(socket.getOutputStream());
+        this.address = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        this.outbound = outbound;
+        writerExecutor.execute(this::writeMessages);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Queues a message to be written to the client. Messages sent after the connection
+     * was closed are discarded, and the connection is closed if the backpressure policy says so.
+     *
+     * @param message The encoded message to send.
+     */
+    @Override
+    public void send(EncodedMessage message) {
+        if (this.closed.get()) return;
+
+        if (!this.outbound.offer(message)) {
+            System.err.println("Client not reading, closing connection " + this.address + "!");
+            close();
+        }
+    }
+
+    /**
+     * Writes the queued messages to the client until the connection is closed, flushing
+     * once for every batch of messages taken from the queue.
+     */
+    private void writeMessages() {
+        List<EncodedMessage> batch = new ArrayList<>();
+
+        try {
+            while (!this.closed.get()) {
+                this.outbound.takeAll(batch);
+                for (EncodedMessage message : batch) {
+                    if (message == CLOSE_SIGNAL) return;
+                    message.writeTo(this.outputStream);
+                }
+                this.outputStream.flush();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Closes the socket and stops the writer. The messages still in the queue are discarded.
+     */
+    @Override
+    public void close() {
+        if (!this.closed.compareAndSet(false, true)) return;
+        this.outbound.replaceAll(CLOSE_SIGNAL);
+
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            System.err.println("Couldn't close the socket of " + this.address + "!\n" + e.getMessage());
+        }
+    }
+}
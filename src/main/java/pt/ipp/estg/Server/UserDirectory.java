@@ -0,0 +1,65 @@
+package pt.ipp.estg.Server;
+
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+
+/**
+ * The {@code UserDirectory} interface represents the registered users, looked up by email when
+ * signing in and by username when addressing other users. Every new user and role change is
+ * persisted by the directory.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+interface UserDirectory {
+    /**
+     * Finds a user by email.
+     *
+     * @param email The email address of the user.
+     * @return The user, or {@code null} if there is no user with the email.
+     */
+    User findByEmail(String email);
+
+    /**
+     * Finds a user by username.
+     *
+     * @param username The username of the user.
+     * @return The user, or {@code null} if there is no user with the username.
+     */
+    User findByUsername(String username);
+
+    /**
+     * Checks if a new user with the specified fields can be stored by the directory.
+     * The heap doesn't limit the length of the fields.
+     *
+     * @param username The username of the new user.
+     * @param email    The email address of the new user.
+     * @param password The password of the new user.
+     * @throws IllegalArgumentException If a field is longer than the directory can store.
+     */
+    default void checkFields(String username, String email, String password) {
+    }
+
+    /**
+     * Adds a new user and persists it.
+     *
+     * @param user The user to add.
+     * @return {@code true} if the user was added, {@code false} if the email is already in use or the user can't be stored.
+     */
+    boolean add(User user);
+
+    /**
+     * Changes the role of a user and persists the change.
+     *
+     * @param user The user.
+     * @param role The new role of the user.
+     */
+    void changeRole(User user, Role role);
+
+    /**
+     * Gets the number of users.
+     *
+     * @return The number of users.
+     */
+    int size();
+}
@@ -0,0 +1,365 @@
+package pt.ipp.estg.Server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+import pt.ipp.estg.Utils.JSON;
+import pt.ipp.estg.Utils.JsonCodecs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * The {@code UserStore} class persists the users of the {@link HeapUserDirectory} as a snapshot, the user
+ * file, and a write-ahead log of the changes made since, one JSON line per created user or role change.
+ * A change is persisted by appending a single line, whatever the number of users.
+ * <p>
+ * Once the log holds enough changes, it is set aside and a new snapshot is written in the background;
+ * the log set aside is deleted once the snapshot is forced to the storage device and replaces the user
+ * file. If the snapshot fails, the log set aside is kept and the snapshot is retried on the next change.
+ * On recovery, the log set aside,
+ * if any, and then the current log are replayed on top of the snapshot. Replaying a change is idempotent,
+ * so the users are recovered whenever the server stops, and the log replayed never grows past the
+ * snapshot interval.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class UserStore {
+    /**
+     * The Gson instance used for serializing the changes, with the streaming codec of the users.
+     */
+    private static final Gson gson = JsonCodecs.GSON;
+    /**
+     * The path of the snapshot, the user file.
+     */
+    private final Path snapshotFile;
+    /**
+     * The path of the write-ahead log.
+     */
+    private final Path logFile;
+    /**
+     * The path of the log set aside while a snapshot is written.
+     */
+    private final Path compactingLogFile;
+    /**
+     * The number of changes in the log after which a new snapshot is written.
+     */
+    private final int snapshotInterval;
+    /**
+     * Whether every change is forced to the storage device before it is acknowledged.
+     */
+    private final boolean fsync;
+    /**
+     * The thread that writes the snapshots.
+     */
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-store-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * The channel of the write-ahead log, opened for appending, or {@code null} if it couldn't be opened.
+     */
+    private FileChannel log;
+    /**
+     * The number of changes in the write-ahead log.
+     */
+    private int logChanges = 0;
+    /**
+     * Whether a snapshot is being written.
+     */
+    private boolean compacting = false;
+    /**
+     * Whether the last snapshot failed, so the next change retries it.
+     */
+    private boolean snapshotFailed = false;
+    /**
+     * The supplier of the current users, used for the snapshots.
+     */
+    private Supplier<Collection<User>> users;
+
+    /**
+     * Constructs a new {@code UserStore} for the specified user file, with its write-ahead log next to it.
+     *
+     * @param snapshotPath     The path of the user file.
+     * @param snapshotInterval The number of changes in the log after which a new snapshot is written.
+     * @param fsync            Whether every change is forced to the storage device before it is acknowledged.
+     */
+    UserStore(String snapshotPath, int snapshotInterval, boolean fsync) {
+        this.snapshotFile = Path.of(snapshotPath);
+        this.logFile = this.snapshotFile.resolveSibling(this.snapshotFile.getFileName() + ".wal");
+        this.compactingLogFile = this.snapshotFile.resolveSibling(this.snapshotFile.getFileName() + ".wal.compacting");
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.fsync = fsync;
+    }
+
+    /**
+     * Recovers the users by replaying the write-ahead logs on top of the snapshot, and opens the log for
+     * appending. A line torn by a crash at the end of the log is discarded. If the snapshot exists but
+     * can't be fully read, nothing is recovered and the log isn't opened, so no snapshot of part of the
+     * users ever replaces it.
+     *
+     * @param users The supplier of the current users, used for the snapshots once the store is open.
+     * @return The recovered users, in the order they were created.
+     * @throws IOException If an I/O error occurs while reading the snapshot or reading or opening the logs.
+     */
+    synchronized Collection<User> recover(Supplier<Collection<User>> users) throws IOException {
+        this.users = users;
+
+        Map<String, User> recovered = readSnapshot();
+        replay(this.compactingLogFile, recovered, false);
+        int validLength = replay(this.logFile, recovered, false);
+
+        this.log = FileChannel.open(this.logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.log.truncate(validLength);
+        this.log.position(validLength);
+
+        if (Files.exists(this.compactingLogFile) || this.logChanges >= this.snapshotInterval) {
+            compact(recovered.values());
+        }
+
+        return recovered.values();
+    }
+
+    /**
+     * Reads the users by replaying the write-ahead logs on top of the snapshot, without opening the log
+     * for appending or writing a snapshot, for copying the users to another store. Unlike recovering,
+     * an invalid change of the logs fails the read, as well as a snapshot that can't be fully read.
+     *
+     * @return The users, in the order they were created.
+     * @throws IOException If an I/O error occurs while reading the snapshot or the logs, or either is invalid.
+     */
+    synchronized Collection<User> read() throws IOException {
+        Map<String, User> recovered = readSnapshot();
+        replay(this.compactingLogFile, recovered, true);
+        replay(this.logFile, recovered, true);
+        return recovered.values();
+    }
+
+    /**
+     * Reads the users of the snapshot, if any.
+     *
+     * @return The users by email, in the order they were created.
+     * @throws IOException If the snapshot exists but can't be fully read.
+     */
+    private Map<String, User> readSnapshot() throws IOException {
+        Map<String, User> recovered = new LinkedHashMap<>();
+        try {
+            for (User user : JSON.readUsers(this.snapshotFile.toString())) {
+                recovered.putIfAbsent(user.getEmail(), user);
+            }
+        } catch (NoSuchFileException e) {
+            // No user was ever saved.
+        }
+        return recovered;
+    }
+
+    /**
+     * Replays the changes of a log file.
+     *
+     * @param file      The log file.
+     * @param recovered The users by email, updated with the changes.
+     * @param strict    Whether an invalid change fails the replay, rather than being skipped.
+     * @return The number of bytes of the complete lines of the file.
+     * @throws IOException If an I/O error occurs while reading the file, or a change is invalid and the replay is strict.
+     */
+    private int replay(Path file, Map<String, User> recovered, boolean strict) throws IOException {
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+
+        int start = 0;
+        for (int end = 0; end < contents.length; end++) {
+            if (contents[end] != '\n') continue;
+
+            String line = new String(contents, start, end - start, StandardCharsets.UTF_8);
+            start = end + 1;
+            if (line.isBlank()) continue;
+
+            try {
+                Change change = gson.fromJson(line, Change.class);
+                change.applyTo(recovered);
+                if (file.equals(this.logFile)) this.logChanges++;
+            } catch (JsonParseException | NullPointerException e) {
+                if (strict) throw new IOException("The user log " + file + " has an invalid change: " + line, e);
+                System.err.println("Skipping an invalid change of the user log!\n" + line);
+            }
+        }
+
+        return start;
+    }
+
+    /**
+     * Persists a new user.
+     *
+     * @param user The new user.
+     * @return {@code true} if the user was persisted, {@code false} if the log couldn't be written.
+     */
+    synchronized boolean created(User user) {
+        return append(new Change(user, null, null));
+    }
+
+    /**
+     * Changes the role of a user and persists the change.
+     *
+     * @param user The user.
+     * @param role The new role of the user.
+     * @return {@code true} if the change was persisted, {@code false} if the log couldn't be written.
+     */
+    synchronized boolean changeRole(User user, Role role) {
+        user.setRole(role);
+        return append(new Change(null, user.getEmail(), role));
+    }
+
+    /**
+     * Appends a change to the write-ahead log, forcing it to the storage device if configured,
+     * and starts writing a new snapshot once the log holds enough changes, or the last one failed.
+     * A change written partially is truncated, so the next change starts on a line of its own.
+     *
+     * @param change The change.
+     * @return {@code true} if the change was appended, {@code false} if the log isn't open or couldn't be written.
+     */
+    private boolean append(Change change) {
+        if (this.log == null) {
+            System.err.println("Couldn't write to the user log, it isn't open!");
+            return false;
+        }
+
+        long position = -1;
+        try {
+            position = this.log.position();
+            ByteBuffer line = ByteBuffer.wrap((gson.toJson(change) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) this.log.write(line);
+            if (this.fsync) this.log.force(false);
+        } catch (IOException e) {
+            System.err.println("Couldn't write to the user log!\n" + e.getMessage());
+            try {
+                if (position >= 0) this.log.truncate(position).position(position);
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+
+        if ((++this.logChanges >= this.snapshotInterval || this.snapshotFailed) && !this.compacting) {
+            try {
+                compact(this.users.get());
+            } catch (IOException e) {
+                System.err.println("Couldn't start a user snapshot!\n" + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the write-ahead log aside, starts a new one, and writes a snapshot of the users in the
+     * background. Must be called while holding the lock of the store, so no change is made between
+     * copying the users and starting the new log.
+     *
+     * @param users The users, with every change of the log applied.
+     * @throws IOException If an I/O error occurs while setting the log aside.
+     */
+    private void compact(Collection<User> users) throws IOException {
+        List<User> snapshot = new ArrayList<>();
+        for (User user : users) {
+            snapshot.add(new User(user.getId(), user.getUsername(), user.getEmail(), user.getPassword(), user.getRole()));
+        }
+
+        if (!Files.exists(this.compactingLogFile)) {
+            if (this.fsync) this.log.force(false);
+            Files.move(this.logFile, this.compactingLogFile);
+
+            FileChannel newLog;
+            try {
+                newLog = FileChannel.open(this.logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                // The log still open is the one set aside, so it is moved back and kept.
+                Files.move(this.compactingLogFile, this.logFile);
+                throw e;
+            }
+
+            this.log.close();
+            this.log = newLog;
+            this.logChanges = 0;
+        }
+        // Otherwise, the changes of the log set aside are already in the users being saved.
+
+        this.compacting = true;
+        this.compactor.execute(() -> {
+            boolean saved = false;
+            try {
+                JSON.saveUsers(this.snapshotFile.toString(), snapshot);
+                saved = true;
+                Files.deleteIfExists(this.compactingLogFile);
+            } catch (IOException e) {
+                System.err.println((saved ? "Couldn't delete the compacted user log!\n" : "Couldn't write the user snapshot, the user log set aside is kept!\n") + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    this.compacting = false;
+                    this.snapshotFailed = !saved;
+                }
+            }
+        });
+    }
+
+    /**
+     * The {@code Change} class represents a line of the write-ahead log: either a created user,
+     * or the new role of the user with an email.
+     */
+    private static class Change {
+        /**
+         * The created user, or {@code null} for a role change.
+         */
+        private final User created;
+        /**
+         * The email of the user whose role changed, or {@code null} for a created user.
+         */
+        private final String email;
+        /**
+         * The new role of the user, or {@code null} for a created user.
+         */
+        private final Role role;
+
+        /**
+         * Constructs a new {@code Change}.
+         *
+         * @param created The created user, or {@code null} for a role change.
+         * @param email   The email of the user whose role changed, or {@code null} for a created user.
+         * @param role    The new role of the user, or {@code null} for a created user.
+         */
+        Change(User created, String email, Role role) {
+            this.created = created;
+            this.email = email;
+            this.role = role;
+        }
+
+        /**
+         * Applies the change to the users. A user is only created if the email isn't in use,
+         * so applying the same change again leaves the users unchanged.
+         *
+         * @param users The users by email.
+         */
+        void applyTo(Map<String, User> users) {
+            if (this.created != null) {
+                users.putIfAbsent(this.created.getEmail(), this.created);
+            } else {
+                User user = users.get(this.email);
+                if (user != null) user.setRole(Objects.requireNonNull(this.role));
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package pt.ipp.estg.Utils;
+
+import pt.ipp.estg.Enums.FsyncPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * The {@code AuditLog} class is an append-only log of {@link Logger.LogEntry} records stored in a
+ * {@link SegmentedLogStore}. Appending an entry only publishes it to a lock-free ring buffer, so the
+ * command path never waits for the disk. A background flusher drains the buffer, encodes the entries
+ * into the memory-mapped segment being written, and forces them to the storage device according to the
+ * configured {@link FsyncPolicy}.
+ * <p>
+ * Appending costs the same whatever the size of the log, unlike rewriting the whole JSON array.
+ * The written entries are also added to a {@link LogIndex}, rebuilt from the store when the log is
+ * opened, so a {@link LogQuery} only reads the records of the matching entries. The entries of the
+ * segments deleted past the retention period are dropped from the index.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public class AuditLog {
+    /**
+     * The maximum number of entries written between two checks of the fsync policy.
+     */
+    private static final int BATCH_SIZE = 1024;
+    /**
+     * The time the flusher waits for new entries when the buffer is empty, in nanoseconds.
+     */
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * The entries waiting to be written.
+     */
+    private final RingBuffer<PendingEntry> buffer;
+    /**
+     * The segments the entries are written to.
+     */
+    private final SegmentedLogStore store;
+    /**
+     * The index of the written entries.
+     */
+    private final LogIndex index = new LogIndex();
+    /**
+     * When the written entries are forced to the storage device.
+     */
+    private final FsyncPolicy fsyncPolicy;
+    /**
+     * The minimum time between two forces with the interval policy, in nanoseconds.
+     */
+    private final long fsyncInterval;
+    /**
+     * The thread that writes the entries to the store.
+     */
+    private final Thread flusher;
+    /**
+     * Whether the log is still accepting entries.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Opens the audit log over the specified store, indexes the entries already stored, and starts its flusher.
+     *
+     * @param store         The segments the entries are written to.
+     * @param bufferSize    The number of entries the ring buffer can hold.
+     * @param fsyncPolicy   When the written entries are forced to the storage device.
+     * @param fsyncInterval The minimum time between two forces with the interval policy, in milliseconds.
+     * @throws IOException If an I/O error occurs while reading the stored entries.
+     */
+    public AuditLog(SegmentedLogStore store, int bufferSize, FsyncPolicy fsyncPolicy, long fsyncInterval) throws IOException {
+        store.onSegmentDeleted(this.index::dropSegment);
+        for (long segmentId : store.segments()) {
+            store.scan(segmentId, (offset, timestamp, ipAddress, actionType, message) -> {
+                this.index.add(segmentId, offset, timestamp, ipAddress, actionType, message);
+                return true;
+            });
+        }
+
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.store = store;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = TimeUnit.MILLISECONDS.toNanos(fsyncInterval);
+        this.flusher = new Thread(this::flushEntries, "audit-log-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Appends an entry to the log. The entry is timestamped now and written by the flusher;
+     * the caller only waits if the ring buffer is full.
+     *
+     * @param ipAddress  The IP address associated with the action.
+     * @param actionType The type of action being logged.
+     * @param message    The detailed message describing the action.
+     */
+    public void append(String ipAddress, String actionType, String message) {
+        PendingEntry entry = new PendingEntry(System.currentTimeMillis(), ipAddress, actionType, message);
+
+        while (!this.buffer.offer(entry)) {
+            if (!this.running) return;
+            LockSupport.unpark(this.flusher);
+            LockSupport.parkNanos(IDLE_WAIT / 10);
+        }
+    }
+
+    /**
+     * Gets the IDs of the stored segments, oldest first.
+     *
+     * @return The IDs of the segments.
+     * @throws IOException If an I/O error occurs while listing the segments.
+     */
+    public List<Long> segments() throws IOException {
+        return this.store.segments();
+    }
+
+    /**
+     * Streams the entries of the segments in the specified range, oldest first, reading one segment
+     * at a time. The entries still waiting in the ring buffer are not included.
+     *
+     * @param fromSegment The ID of the first segment to read.
+     * @param toSegment   The ID of the last segment to read.
+     * @return The stream of entries, which must be closed once it is no longer needed.
+     * @throws IOException If an I/O error occurs while listing the segments.
+     */
+    public Stream<Logger.LogEntry> read(long fromSegment, long toSegment) throws IOException {
+        return this.store.read(fromSegment, toSegment);
+    }
+
+    /**
+     * Finds the most recent written entries matching a query. Only the records of the matching
+     * entries are read, grouped by segment; the entries of deleted segments are left out.
+     *
+     * @param query The query.
+     * @return The matching entries, most recent first.
+     * @throws IOException If an I/O error occurs while reading the records.
+     */
+    public List<Logger.LogEntry> query(LogQuery query) throws IOException {
+        long[] locations = this.index.search(query);
+        Logger.LogEntry[] entries = new Logger.LogEntry[locations.length];
+
+        for (int end = locations.length; end > 0; ) {
+            long segmentId = locations[end - 1] >>> 32;
+            int start = end - 1;
+            while (start > 0 && locations[start - 1] >>> 32 == segmentId) start--;
+
+            // The locations are most recent first, so the offsets of a segment are read from the end.
+            int[] offsets = new int[end - start];
+            for (int i = 0; i < offsets.length; i++) offsets[i] = (int) locations[end - 1 - i];
+            int last = end - 1;
+            this.store.readAt(segmentId, offsets, (i, entry) -> entries[last - i] = entry);
+
+            end = start;
+        }
+
+        List<Logger.LogEntry> found = new ArrayList<>(entries.length);
+        for (Logger.LogEntry entry : entries) {
+            if (entry != null) found.add(entry);
+        }
+        return found;
+    }
+
+    /**
+     * Generates a report of the written entries, scanning the segments in parallel.
+     *
+     * @return The report.
+     * @throws IOException If an I/O error occurs while reading the segments.
+     */
+    public LogReport report() throws IOException {
+        return LogReport.generate(this.store);
+    }
+
+    /**
+     * Gets the number of written entries.
+     *
+     * @return The number of entries.
+     */
+    public long size() {
+        return this.index.size();
+    }
+
+    /**
+     * Writes the entries published to the ring buffer until the log is closed and the buffer is empty.
+     */
+    private void flushEntries() {
+        long lastForce = System.nanoTime();
+        boolean unforced = false;
+
+        while (this.running || !this.buffer.isEmpty()) {
+            try {
+                int written = 0;
+                PendingEntry entry;
+                while (written < BATCH_SIZE && (entry = this.buffer.poll()) != null) {
+                    try {
+                        int offset = this.store.append(entry.timestamp(), entry.ipAddress(), entry.actionType(), entry.message());
+                        this.index.add(this.store.getSegmentId(), offset, entry.timestamp(), entry.ipAddress(), entry.actionType(), entry.message());
+                    } catch (IOException e) {
+                        System.err.println("Couldn't write to the audit log!\n" + e.getMessage());
+                    }
+                    written++;
+                }
+
+                if (written == 0) {
+                    if (unforced && System.nanoTime() - lastForce >= this.fsyncInterval) {
+                        this.store.force();
+                        lastForce = System.nanoTime();
+                        unforced = false;
+                    }
+                    this.store.rotateIfExpired();
+                    LockSupport.parkNanos(IDLE_WAIT);
+                    continue;
+                }
+
+                if (this.fsyncPolicy == FsyncPolicy.Batch) {
+                    this.store.force();
+                } else if (this.fsyncPolicy == FsyncPolicy.Interval) {
+                    unforced = true;
+                    if (System.nanoTime() - lastForce >= this.fsyncInterval) {
+                        this.store.force();
+                        lastForce = System.nanoTime();
+                        unforced = false;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Couldn't rotate the audit log!\n" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting entries, waits for the flusher to write the pending ones, and forces them
+     * to the storage device unless the policy is never.
+     */
+    public void close() {
+        this.running = false;
+        LockSupport.unpark(this.flusher);
+
+        try {
+            this.flusher.join();
+            if (this.fsyncPolicy != FsyncPolicy.Never) this.store.force();
+            this.store.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The {@code PendingEntry} record represents an entry waiting in the ring buffer, holding the raw
+     * timestamp so the encoding is done by the flusher, off the command path.
+     *
+     * @param timestamp  The time of the entry, in milliseconds since the epoch.
+     * @param ipAddress  The IP address associated with the action.
+     * @param actionType The type of action being logged.
+     * @param message    The detailed message describing the action.
+     */
+    private record PendingEntry(long timestamp, String ipAddress, String actionType, String message) {
+    }
+}
@@ -0,0 +1,79 @@
+package pt.ipp.estg.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * The {@code Configuration} class provides access to the application settings stored in the
+ * {@code server.properties} resource. Any setting can be overridden at startup with a
+ * system property of the same name (e.g., {@code -Dserver.transport=selector}).
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public class Configuration {
+    /**
+     * The name of the properties file in the resources directory.
+     */
+    private static final String PROPERTIES_FILE_NAME = "server.properties";
+    /**
+     * The settings loaded from the properties file.
+     */
+    private static final Properties properties = loadProperties();
+
+    /**
+     * Loads the settings from the properties file in the resources directory.
+     *
+     * @return The loaded settings, or an empty set of settings if the file doesn't exist.
+     */
+    private static Properties loadProperties() {
+        Properties properties = new Properties();
+
+        try (InputStream inputStream = Configuration.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE_NAME)) {
+            if (inputStream != null) properties.load(inputStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return properties;
+    }
+
+    /**
+     * Gets the value of a setting as a string.
+     *
+     * @param key          The name of the setting.
+     * @param defaultValue The value returned when the setting isn't defined.
+     * @return The value of the setting.
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Gets the value of a setting as an integer.
+     *
+     * @param key          The name of the setting.
+     * @param defaultValue The value returned when the setting isn't defined or isn't a number.
+     * @return The value of the setting.
+     */
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets the value of a setting as a boolean.
+     *
+     * @param key          The name of the setting.
+     * @param defaultValue The value returned when the setting isn't defined.
+     * @return The value of the setting.
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+    }
+}
@@ -1,19 +1,26 @@
 package pt.ipp.estg.Utils;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
 import pt.ipp.estg.Entities.User;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Reader;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 
 /**
  * The {@code JSON} class provides methods for loading and saving data in JSON format.
  * It is specifically tailored for handling user data and log entries in the application.
- * Utilizes the Gson library for JSON processing.
+ * Utilizes the Gson library for JSON processing, through the streaming codecs of {@link JsonCodecs},
+ * so the files are read and written record by record.
  *
  * @author Carlos Leite, Sergio Felix
  * @version 1.0
@@ -32,53 +39,94 @@ public class JSON {
      * @return An ArrayList of User objects loaded from the JSON file.
      */
     public static ArrayList<User> loadUsers() {
+        return loadUsers(USERS_FILE_PATH);
+    }
+
+    /**
+     * Loads user data from the specified JSON file.
+     *
+     * @param filePath The path of the JSON file.
+     * @return An ArrayList of User objects loaded from the JSON file.
+     */
+    public static ArrayList<User> loadUsers(String filePath) {
+        return loadArray(filePath, JsonCodecs.USER);
+    }
+
+    /**
+     * Reads user data from the specified JSON file, failing unless every user is read, so a file that
+     * is corrupt or can't be read is never taken for a shorter list of users.
+     *
+     * @param filePath The path of the JSON file.
+     * @return An ArrayList of User objects read from the JSON file.
+     * @throws NoSuchFileException If the file doesn't exist.
+     * @throws IOException         If an I/O error occurs while reading the file, or it isn't a valid array of users.
+     */
+    public static ArrayList<User> readUsers(String filePath) throws IOException {
         ArrayList<User> users = new ArrayList<>();
-        Gson gson = new Gson();
 
-        try (Reader fileReader = new FileReader(USERS_FILE_PATH)) {
-            User[] userArray = gson.fromJson(fileReader, User[].class);
-            if (userArray != null) users.addAll(Arrays.asList(userArray));
-        } catch (IOException e) {
-            e.printStackTrace();
+        try (Reader fileReader = Files.newBufferedReader(Path.of(filePath), StandardCharsets.UTF_8)) {
+            JsonCodecs.readArray(fileReader, JsonCodecs.USER, users::add);
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("The user file " + filePath + " is invalid: " + e.getMessage(), e);
         }
 
         return users;
     }
 
+    /**
+     * Replaces the contents of the specified JSON file with the given users. The users are written
+     * to a temporary file first, which is forced to the storage device and then replaces the JSON
+     * file, and the directory is forced too, so neither a failed write nor a crash right after
+     * replacing the file leaves it half-written.
+     *
+     * @param filePath The path of the JSON file.
+     * @param users    The User objects to be saved.
+     * @throws IOException If an I/O error occurs while writing or replacing the file.
+     */
+    public static void saveUsers(String filePath, List<User> users) throws IOException {
+        Path file = Path.of(filePath).toAbsolutePath();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer fileWriter = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+            JsonCodecs.writeArray(fileWriter, JsonCodecs.USER, users);
+            fileWriter.flush();
+            channel.force(true);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        try (FileChannel directory = FileChannel.open(file.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+            // Some platforms can't open or force a directory; the rename is still atomic there.
+        }
+    }
+
     /**
      * Saves a User object to the JSON file.
      *
      * @param user The User object to be saved.
      */
     public static void saveUser(User user) {
-        Gson gson = new Gson();
         ArrayList<User> users = loadUsers();
 
-        try (FileWriter fileWriter = new FileWriter(USERS_FILE_PATH)) {
+        try (Writer fileWriter = new BufferedWriter(new FileWriter(USERS_FILE_PATH))) {
             users.add(user);
-            gson.toJson(users, fileWriter);
+            JsonCodecs.writeArray(fileWriter, JsonCodecs.USER, users);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Loads log entries from the JSON file.
+     * Loads log entries from the JSON file. The audit log itself is stored in segments, which
+     * are streamed with {@link Logger#readLogs} instead.
      *
      * @return An ArrayList of LogEntry objects loaded from the JSON file.
      */
     public static ArrayList<Logger.LogEntry> loadLogs() {
-        ArrayList<Logger.LogEntry> logs = new ArrayList<>();
-        Gson gson = new Gson();
-
-        try (Reader fileReader = new FileReader(LOGS_FILE_PATH)) {
-            Logger.LogEntry[] logsArray = gson.fromJson(fileReader, Logger.LogEntry[].class);
-            if (logsArray != null) logs.addAll(Arrays.asList(logsArray));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return logs;
+        return loadArray(LOGS_FILE_PATH, JsonCodecs.LOG_ENTRY);
     }
 
     /**
@@ -87,14 +135,33 @@ public class JSON {
      * @param logEntry The LogEntry object to be saved.
      */
     public static void saveLog(Logger.LogEntry logEntry) {
-        Gson gson = new Gson();
         ArrayList<Logger.LogEntry> logEntries = loadLogs();
 
-        try (FileWriter fileWriter = new FileWriter(LOGS_FILE_PATH)) {
+        try (Writer fileWriter = new BufferedWriter(new FileWriter(LOGS_FILE_PATH))) {
             logEntries.add(logEntry);
-            gson.toJson(logEntries, fileWriter);
+            JsonCodecs.writeArray(fileWriter, JsonCodecs.LOG_ENTRY, logEntries);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Loads the elements of a JSON array file, reading them one at a time.
+     *
+     * @param filePath The path of the JSON file.
+     * @param adapter  The adapter of the elements.
+     * @param <T>      The type of the elements.
+     * @return An ArrayList of the elements loaded from the JSON file.
+     */
+    private static <T> ArrayList<T> loadArray(String filePath, TypeAdapter<T> adapter) {
+        ArrayList<T> elements = new ArrayList<>();
+
+        try (Reader fileReader = new BufferedReader(new FileReader(filePath))) {
+            JsonCodecs.readArray(fileReader, adapter, elements::add);
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+        }
+
+        return elements;
+    }
 }
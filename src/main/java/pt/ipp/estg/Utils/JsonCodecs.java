@@ -0,0 +1,313 @@
+package pt.ipp.estg.Utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import pt.ipp.estg.Entities.Request;
+import pt.ipp.estg.Entities.User;
+import pt.ipp.estg.Enums.Role;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * The {@code JsonCodecs} class provides hand-written, thread-safe {@link TypeAdapter}s for the entities
+ * stored as JSON, {@link User}, {@link Request} and {@link Logger.LogEntry}, and a shared {@link Gson}
+ * instance that uses them instead of reflection. The JSON they read and write is the same as Gson's
+ * reflective binding, so existing {@code users.json} and {@code logs.json} files stay compatible:
+ * null fields are omitted, unknown fields are skipped, and unknown roles are read as {@code null}.
+ * <p>
+ * Arrays are read and written element by element with {@link #readArray} and {@link #writeArray},
+ * so a large file is never held as a tree or as an intermediate array.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public final class JsonCodecs {
+    /**
+     * The adapter of the users.
+     */
+    public static final TypeAdapter<User> USER = new UserAdapter();
+    /**
+     * The adapter of the missile launch requests.
+     */
+    public static final TypeAdapter<Request> REQUEST = new RequestAdapter();
+    /**
+     * The adapter of the log entries.
+     */
+    public static final TypeAdapter<Logger.LogEntry> LOG_ENTRY = new LogEntryAdapter();
+    /**
+     * The Gson instance with the adapters registered, shared because it is thread-safe.
+     */
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(User.class, USER)
+            .registerTypeAdapter(Request.class, REQUEST)
+            .registerTypeAdapter(Logger.LogEntry.class, LOG_ENTRY)
+            .create();
+
+    /**
+     * Prevents instantiation, as the class only holds the codecs.
+     */
+    private JsonCodecs() {
+    }
+
+    /**
+     * Reads a JSON array element by element. An empty or {@code null} document is read as an empty array.
+     *
+     * @param reader  The reader of the JSON document.
+     * @param adapter The adapter of the elements.
+     * @param action  The action performed with each element.
+     * @param <T>     The type of the elements.
+     * @throws IOException If an I/O error occurs or the document isn't a valid array.
+     */
+    public static <T> void readArray(Reader reader, TypeAdapter<T> adapter, Consumer<? super T> action) throws IOException {
+        JsonReader in = new JsonReader(reader);
+        in.setLenient(true);
+        try {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return;
+            }
+        } catch (EOFException e) {
+            return;
+        }
+
+        in.beginArray();
+        while (in.hasNext()) action.accept(adapter.read(in));
+        in.endArray();
+    }
+
+    /**
+     * Writes a JSON array element by element.
+     *
+     * @param writer   The writer of the JSON document.
+     * @param adapter  The adapter of the elements.
+     * @param elements The elements.
+     * @param <T>      The type of the elements.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static <T> void writeArray(Writer writer, TypeAdapter<T> adapter, Iterable<? extends T> elements) throws IOException {
+        JsonWriter out = new JsonWriter(writer);
+        out.setSerializeNulls(false);
+        out.setHtmlSafe(true);
+        out.beginArray();
+        for (T element : elements) adapter.write(out, element);
+        out.endArray();
+        out.flush();
+    }
+
+    /**
+     * Writes a string field, omitting it if it is {@code null}.
+     *
+     * @param out   The writer.
+     * @param name  The name of the field.
+     * @param value The value of the field.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void writeField(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) out.name(name).value(value);
+    }
+
+    /**
+     * Reads a string value, which may be {@code null}.
+     *
+     * @param in The reader.
+     * @return The string, or {@code null}.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Reads a role by name, which may be {@code null}.
+     *
+     * @param in The reader.
+     * @return The role, or {@code null} if it is {@code null} or unknown.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static Role readRole(JsonReader in) throws IOException {
+        String name = readString(in);
+        if (name == null) return null;
+
+        try {
+            return Role.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The {@code UserAdapter} class reads and writes a user as an object with its id, username,
+     * email, password and role.
+     */
+    private static final class UserAdapter extends TypeAdapter<User> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(JsonWriter out, User user) throws IOException {
+            if (user == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (user.getId() != null) out.name("id").value(user.getId().toString());
+            writeField(out, "username", user.getUsername());
+            writeField(out, "email", user.getEmail());
+            writeField(out, "password", user.getPassword());
+            if (user.getRole() != null) out.name("role").value(user.getRole().name());
+            out.endObject();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public User read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            User user = new User();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> {
+                        String id = readString(in);
+                        try {
+                            user.setId(id == null ? null : UUID.fromString(id));
+                        } catch (IllegalArgumentException e) {
+                            throw new JsonSyntaxException("Invalid user id " + id + " at " + in.getPath(), e);
+                        }
+                    }
+                    case "username" -> user.setUsername(readString(in));
+                    case "email" -> user.setEmail(readString(in));
+                    case "password" -> user.setPassword(readString(in));
+                    case "role" -> user.setRole(readRole(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return user;
+        }
+    }
+
+    /**
+     * The {@code RequestAdapter} class reads and writes a request as an object with its user,
+     * location, reason and approval role.
+     */
+    private static final class RequestAdapter extends TypeAdapter<Request> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(JsonWriter out, Request request) throws IOException {
+            if (request == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (request.getUser() != null) {
+                out.name("user");
+                USER.write(out, request.getUser());
+            }
+            writeField(out, "location", request.getLocation());
+            writeField(out, "reason", request.getReason());
+            if (request.getApproval() != null) out.name("approval").value(request.getApproval().name());
+            out.endObject();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Request read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Request request = new Request();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "user" -> request.setUser(USER.read(in));
+                    case "location" -> request.setLocation(readString(in));
+                    case "reason" -> request.setReason(readString(in));
+                    case "approval" -> request.setApproval(readRole(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return request;
+        }
+    }
+
+    /**
+     * The {@code LogEntryAdapter} class reads and writes a log entry as an object with its date and time,
+     * IP address, action type and message.
+     */
+    private static final class LogEntryAdapter extends TypeAdapter<Logger.LogEntry> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(JsonWriter out, Logger.LogEntry entry) throws IOException {
+            if (entry == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            writeField(out, "dateTime", entry.dateTime);
+            writeField(out, "ipAddress", entry.ipAddress);
+            writeField(out, "actionType", entry.actionType);
+            writeField(out, "message", entry.message);
+            out.endObject();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Logger.LogEntry read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Logger.LogEntry entry = new Logger.LogEntry(null, null, null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "dateTime" -> entry.dateTime = readString(in);
+                    case "ipAddress" -> entry.ipAddress = readString(in);
+                    case "actionType" -> entry.actionType = readString(in);
+                    case "message" -> entry.message = readString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package pt.ipp.estg.Utils;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The {@code LogIndex} class indexes the entries of the audit log by time, action type, IP address and
+ * username, so a {@link LogQuery} finds the matching entries without reading the whole log.
+ * <p>
+ * Each segment of the {@link SegmentedLogStore} has an index of its own, dropped with the segment when it
+ * is deleted past the retention period, so the index only holds the entries still stored. Every entry gets
+ * a sequence number in its segment, in the order it is appended, and the index of the segment keeps, for
+ * each sequence number, its time and the offset of its record. The times are kept in ascending order, so a
+ * time range is found with a binary search, and each action type, IP address and username has a sorted
+ * list of the sequence numbers of its entries, intersected by the queries.
+ * <p>
+ * The index is only added to by the flusher of the {@link AuditLog}, and is searched by any thread.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class LogIndex {
+    /**
+     * The lock that lets many searches run while no entry is being added or segment dropped.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * The indexes of the segments by segment ID.
+     */
+    private final NavigableMap<Long, SegmentIndex> segments = new TreeMap<>();
+    /**
+     * The time of the last indexed entry, in milliseconds since the epoch, so the times never go backwards.
+     */
+    private long lastTimestamp = Long.MIN_VALUE;
+    /**
+     * The number of indexed entries.
+     */
+    private long size = 0;
+
+    /**
+     * Indexes an entry appended to the log.
+     *
+     * @param segmentId  The ID of the segment of the record.
+     * @param offset     The offset of the record in the segment.
+     * @param timestamp  The time of the entry, in milliseconds since the epoch.
+     * @param ipAddress  The IP address associated with the action.
+     * @param actionType The type of action being logged.
+     * @param message    The detailed message describing the action.
+     */
+    void add(long segmentId, int offset, long timestamp, String ipAddress, String actionType, String message) {
+        String host = LogMessages.hostOf(ipAddress);
+        String username = LogMessages.usernameOf(message);
+
+        this.lock.writeLock().lock();
+        try {
+            this.lastTimestamp = Math.max(timestamp, this.lastTimestamp);
+            this.segments.computeIfAbsent(segmentId, SegmentIndex::new).add(offset, this.lastTimestamp, ipAddress, host, actionType, username);
+            this.size++;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the index of a segment deleted from the store.
+     *
+     * @param segmentId The ID of the segment.
+     */
+    void dropSegment(long segmentId) {
+        this.lock.writeLock().lock();
+        try {
+            SegmentIndex segment = this.segments.remove(segmentId);
+            if (segment != null) this.size -= segment.size;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the locations of the most recent entries matching a query.
+     *
+     * @param query The query.
+     * @return The locations of the matching entries, most recent first, at most the limit of the query:
+     * the segment ID in the upper bits and the offset in the lower bits.
+     */
+    long[] search(LogQuery query) {
+        this.lock.readLock().lock();
+        try {
+            long[] found = new long[(int) Math.min(query.limit(), this.size)];
+            int count = 0;
+
+            for (SegmentIndex segment : this.segments.descendingMap().values()) {
+                if (count == found.length) break;
+                if (segment.size == 0 || segment.timestamps[0] > query.to()) continue;
+                if (segment.timestamps[segment.size - 1] < query.from()) break;
+                count = segment.search(query, found, count);
+            }
+
+            return Arrays.copyOf(found, count);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of indexed entries.
+     *
+     * @return The number of entries.
+     */
+    long size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a larger capacity for an array that is full, growing by half without overflowing.
+     *
+     * @param capacity The current capacity.
+     * @return The larger capacity.
+     */
+    private static int grow(int capacity) {
+        if (capacity == Integer.MAX_VALUE - 8) throw new IllegalStateException("The log index of a segment is full.");
+        return (int) Math.min((long) capacity + (capacity >> 1) + 1, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * The {@code SegmentIndex} class indexes the entries of a single segment.
+     */
+    private static final class SegmentIndex {
+        /**
+         * The ID of the segment.
+         */
+        private final long segmentId;
+        /**
+         * The time of each entry, in milliseconds since the epoch, never lower than the time of the previous entry.
+         */
+        private long[] timestamps = new long[1024];
+        /**
+         * The offset of the record of each entry in the segment.
+         */
+        private int[] offsets = new int[1024];
+        /**
+         * The number of indexed entries of the segment.
+         */
+        private int size = 0;
+        /**
+         * The sequence numbers of the entries by action type.
+         */
+        private final Map<String, Postings> byActionType = new HashMap<>();
+        /**
+         * The sequence numbers of the entries by IP address, both with and without the port.
+         */
+        private final Map<String, Postings> byIpAddress = new HashMap<>();
+        /**
+         * The sequence numbers of the entries by the username of the user who performed the action.
+         */
+        private final Map<String, Postings> byUsername = new HashMap<>();
+
+        /**
+         * Constructs a new, empty {@code SegmentIndex}.
+         *
+         * @param segmentId The ID of the segment.
+         */
+        SegmentIndex(long segmentId) {
+            this.segmentId = segmentId;
+        }
+
+        /**
+         * Indexes an entry of the segment.
+         *
+         * @param offset     The offset of the record in the segment.
+         * @param timestamp  The time of the entry, not lower than the time of the previous entry.
+         * @param ipAddress  The IP address associated with the action.
+         * @param host       The IP address without the port.
+         * @param actionType The type of action being logged.
+         * @param username   The username of the user who performed the action, or {@code null} if unknown.
+         */
+        void add(int offset, long timestamp, String ipAddress, String host, String actionType, String username) {
+            if (this.size == this.timestamps.length) {
+                int capacity = grow(this.size);
+                this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+                this.offsets = Arrays.copyOf(this.offsets, capacity);
+            }
+
+            int sequence = this.size;
+            this.timestamps[sequence] = timestamp;
+            this.offsets[sequence] = offset;
+            this.size++;
+
+            this.byActionType.computeIfAbsent(actionType, key -> new Postings()).add(sequence);
+            this.byIpAddress.computeIfAbsent(ipAddress, key -> new Postings()).add(sequence);
+            if (!host.equals(ipAddress)) this.byIpAddress.computeIfAbsent(host, key -> new Postings()).add(sequence);
+            if (username != null) this.byUsername.computeIfAbsent(username, key -> new Postings()).add(sequence);
+        }
+
+        /**
+         * Adds the locations of the most recent entries of the segment matching a query to the found locations.
+         *
+         * @param query The query.
+         * @param found The found locations, filled up to its length.
+         * @param count The number of found locations so far.
+         * @return The number of found locations after searching the segment.
+         */
+        int search(LogQuery query, long[] found, int count) {
+            int first = lowerBound(query.from());
+            int last = query.to() == Long.MAX_VALUE ? this.size : lowerBound(query.to() + 1);
+
+            List<Postings> filters = new ArrayList<>(3);
+            if (!addFilter(filters, this.byActionType, query.actionType())) return count;
+            if (!addFilter(filters, this.byIpAddress, query.ipAddress())) return count;
+            if (!addFilter(filters, this.byUsername, query.username())) return count;
+
+            if (filters.isEmpty()) {
+                for (int sequence = last - 1; sequence >= first && count < found.length; sequence--) {
+                    found[count++] = location(sequence);
+                }
+                return count;
+            }
+
+            filters.sort(Comparator.comparingInt(postings -> postings.size));
+            Postings driver = filters.get(0);
+
+            for (int i = driver.lowerBound(last) - 1; i >= 0 && count < found.length; i--) {
+                int sequence = driver.sequences[i];
+                if (sequence < first) break;
+
+                boolean matches = true;
+                for (int j = 1; j < filters.size() && matches; j++) {
+                    matches = filters.get(j).contains(sequence);
+                }
+                if (matches) found[count++] = location(sequence);
+            }
+
+            return count;
+        }
+
+        /**
+         * Gets the location of the record of an entry: the segment ID in the upper bits and the offset in the lower bits.
+         *
+         * @param sequence The sequence number of the entry.
+         * @return The location of the record.
+         */
+        private long location(int sequence) {
+            return this.segmentId << 32 | (this.offsets[sequence] & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Adds the sequence numbers of a filter value to the filters of a search.
+         *
+         * @param filters The filters of the search.
+         * @param index   The index of the filtered field.
+         * @param value   The value of the filter, or {@code null} if the field isn't filtered.
+         * @return {@code false} if no entry has the value, {@code true} otherwise.
+         */
+        private static boolean addFilter(List<Postings> filters, Map<String, Postings> index, String value) {
+            if (value == null) return true;
+            Postings postings = index.get(value);
+            if (postings == null) return false;
+            filters.add(postings);
+            return true;
+        }
+
+        /**
+         * Finds the first entry with a time at or after the specified time.
+         *
+         * @param timestamp The time, in milliseconds since the epoch.
+         * @return The sequence number of the entry, or the number of entries if there is none.
+         */
+        private int lowerBound(long timestamp) {
+            int low = 0, high = this.size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.timestamps[middle] < timestamp) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The {@code Postings} class is a growable, sorted list of sequence numbers.
+     */
+    private static final class Postings {
+        /**
+         * The sequence numbers, in ascending order.
+         */
+        private int[] sequences = new int[8];
+        /**
+         * The number of sequence numbers.
+         */
+        private int size = 0;
+
+        /**
+         * Adds a sequence number greater than all the others.
+         *
+         * @param sequence The sequence number.
+         */
+        void add(int sequence) {
+            if (this.size == this.sequences.length) this.sequences = Arrays.copyOf(this.sequences, grow(this.size));
+            this.sequences[this.size++] = sequence;
+        }
+
+        /**
+         * Checks if the list has a sequence number.
+         *
+         * @param sequence The sequence number.
+         * @return {@code true} if the list has it, {@code false} otherwise.
+         */
+        boolean contains(int sequence) {
+            return Arrays.binarySearch(this.sequences, 0, this.size, sequence) >= 0;
+        }
+
+        /**
+         * Finds the position of the first sequence number at or after the specified one.
+         *
+         * @param sequence The sequence number.
+         * @return The position, or the size of the list if there is none.
+         */
+        int lowerBound(int sequence) {
+            int low = 0, high = this.size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.sequences[middle] < sequence) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package pt.ipp.estg.Utils;
+
+/**
+ * The {@code LogMessages} class extracts the details of the audit log entries that are only found in
+ * their text, such as the user of messages starting with "User (Role)username", written by the server.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class LogMessages {
+    /**
+     * The start of the messages of the actions performed by a user.
+     */
+    private static final String USER_PREFIX = "User (";
+
+    /**
+     * Prevents instantiation, as this class only has static methods.
+     */
+    private LogMessages() {
+    }
+
+    /**
+     * Gets the IP address without the port.
+     *
+     * @param ipAddress The IP address, with or without the port.
+     * @return The IP address without the port.
+     */
+    static String hostOf(String ipAddress) {
+        int separator = ipAddress.lastIndexOf(':');
+        return separator > 0 && ipAddress.indexOf(':') == separator ? ipAddress.substring(0, separator) : ipAddress;
+    }
+
+    /**
+     * Gets the role of the user who performed the action.
+     *
+     * @param message The message of the entry.
+     * @return The role, or {@code null} if the message doesn't name a user.
+     */
+    static String roleOf(String message) {
+        if (!message.startsWith(USER_PREFIX)) return null;
+        int end = message.indexOf(')');
+        return end > USER_PREFIX.length() ? message.substring(USER_PREFIX.length(), end) : null;
+    }
+
+    /**
+     * Gets the username of the user who performed the action.
+     *
+     * @param message The message of the entry.
+     * @return The username, or {@code null} if the message doesn't name a user.
+     */
+    static String usernameOf(String message) {
+        if (!message.startsWith(USER_PREFIX)) return null;
+        int start = message.indexOf(')');
+        if (start < 0) return null;
+        int end = message.indexOf(' ', start);
+        return end > start + 1 ? message.substring(start + 1, end) : null;
+    }
+}
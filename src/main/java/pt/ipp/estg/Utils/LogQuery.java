@@ -0,0 +1,83 @@
+package pt.ipp.estg.Utils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The {@code LogQuery} record represents a search of the audit log. Every filter is optional;
+ * the entries returned match all the filters that are set.
+ *
+ * @param ipAddress  The IP address of the entries, with or without the port, or {@code null} for any.
+ * @param actionType The type of action of the entries (e.g., "Attack"), or {@code null} for any.
+ * @param username   The username of the user who performed the action, or {@code null} for any.
+ * @param from       The earliest time of the entries, in milliseconds since the epoch.
+ * @param to         The latest time of the entries, in milliseconds since the epoch.
+ * @param limit      The maximum number of entries returned, the most recent ones.
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public record LogQuery(String ipAddress, String actionType, String username, long from, long to, int limit) {
+    /**
+     * The number of entries returned when no limit is given.
+     */
+    public static final int DEFAULT_LIMIT = 50;
+    /**
+     * The maximum number of entries a query can return.
+     */
+    public static final int MAX_LIMIT = 1000;
+    /**
+     * The formatter used for the times given in the filters.
+     */
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy-HH:mm[:ss]");
+
+    /**
+     * Parses the filters of a query, given as space-separated {@code key=value} pairs with the keys
+     * {@code ip}, {@code type}, {@code user}, {@code from}, {@code to} (as dd/MM/yyyy-HH:mm[:ss]) and {@code limit}.
+     *
+     * @param filters The filters of the query.
+     * @return The query.
+     * @throws IllegalArgumentException If a filter is unknown or its value is invalid.
+     */
+    public static LogQuery parse(String filters) {
+        String ipAddress = null, actionType = null, username = null;
+        long from = Long.MIN_VALUE, to = Long.MAX_VALUE;
+        int limit = DEFAULT_LIMIT;
+
+        for (String filter : filters.trim().split("\\s+")) {
+            if (filter.isEmpty()) continue;
+
+            int separator = filter.indexOf('=');
+            if (separator <= 0 || separator == filter.length() - 1) throw new IllegalArgumentException("Invalid filter: " + filter);
+            String value = filter.substring(separator + 1);
+
+            try {
+                switch (filter.substring(0, separator)) {
+                    case "ip" -> ipAddress = value;
+                    case "type" -> actionType = value;
+                    case "user" -> username = value;
+                    case "from" -> from = parseTime(value);
+                    case "to" -> to = parseTime(value);
+                    case "limit" -> limit = Math.min(Integer.parseInt(value), MAX_LIMIT);
+                    default -> throw new IllegalArgumentException("Unknown filter: " + filter);
+                }
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid filter: " + filter);
+            }
+        }
+
+        if (limit <= 0) throw new IllegalArgumentException("The limit must be positive.");
+        return new LogQuery(ipAddress, actionType, username, from, to, limit);
+    }
+
+    /**
+     * Parses a time given in a filter.
+     *
+     * @param value The time, as dd/MM/yyyy-HH:mm[:ss].
+     * @return The time in milliseconds since the epoch.
+     */
+    private static long parseTime(String value) {
+        return LocalDateTime.parse(value, TIME_FORMATTER).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,236 @@
+package pt.ipp.estg.Utils;
+
+import pt.ipp.estg.Enums.Role;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * The {@code LogReport} class aggregates the entries of the audit log into a summary for the Generals:
+ * the messages of each user per minute, the missile launches by the role that has to approve them, the
+ * requests accepted and rejected by each role, and the connections and disconnections of each IP address.
+ * <p>
+ * A report is generated by scanning the segments of the {@link SegmentedLogStore} in parallel, each one
+ * into a partial report, on the common fork-join pool; the partial reports are then merged. Segments are
+ * scanned record by record, so no segment is loaded onto the heap as a whole.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public final class LogReport {
+    /**
+     * The formatter used for the times in the summary.
+     */
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+    /**
+     * The number of milliseconds in a minute.
+     */
+    private static final long MINUTE = 60_000;
+    /**
+     * The approval of the missiles launched by Generals, which don't need one.
+     */
+    private static final String NO_APPROVAL = "None";
+    /**
+     * The number of messages of each user, by minute since the epoch.
+     */
+    private final Map<String, Map<Long, Integer>> messagesPerMinute = new HashMap<>();
+    /**
+     * The number of missile launches by the role that has to approve them.
+     */
+    private final Map<String, Long> launchesByApproval = new TreeMap<>();
+    /**
+     * The number of requests accepted (first element) and rejected (second element) by each role.
+     */
+    private final Map<String, long[]> decisionsByRole = new TreeMap<>();
+    /**
+     * The number of connections (first element) and disconnections (second element) of each IP address, without the port.
+     */
+    private final Map<String, long[]> churnByHost = new HashMap<>();
+    /**
+     * The number of aggregated entries.
+     */
+    private long entries = 0;
+    /**
+     * The time of the earliest aggregated entry, in milliseconds since the epoch.
+     */
+    private long firstTimestamp = Long.MAX_VALUE;
+    /**
+     * The time of the latest aggregated entry, in milliseconds since the epoch.
+     */
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Generates a report of all the entries of a store, scanning its segments in parallel.
+     *
+     * @param store The store of the audit log.
+     * @return The report.
+     * @throws IOException If an I/O error occurs while reading the segments.
+     */
+    public static LogReport generate(SegmentedLogStore store) throws IOException {
+        try {
+            return store.segments().parallelStream().collect(LogReport::new, (report, segmentId) -> {
+                try {
+                    store.scan(segmentId, report::add);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, LogReport::merge);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Adds an entry to the report.
+     *
+     * @param offset     The offset of the record in its segment, unused.
+     * @param timestamp  The time of the entry, in milliseconds since the epoch.
+     * @param ipAddress  The IP address associated with the action.
+     * @param actionType The type of action being logged.
+     * @param message    The detailed message describing the action.
+     * @return Always {@code true}, to keep scanning.
+     */
+    private boolean add(int offset, long timestamp, String ipAddress, String actionType, String message) {
+        this.entries++;
+        this.firstTimestamp = Math.min(this.firstTimestamp, timestamp);
+        this.lastTimestamp = Math.max(this.lastTimestamp, timestamp);
+
+        switch (actionType) {
+            case "Message" -> {
+                String username = LogMessages.usernameOf(message);
+                if (username != null) {
+                    this.messagesPerMinute.computeIfAbsent(username, key -> new HashMap<>()).merge(timestamp / MINUTE, 1, Integer::sum);
+                }
+            }
+            case "Attack" -> {
+                String role = LogMessages.roleOf(message);
+                if (role != null) this.launchesByApproval.merge(approvalOf(role), 1L, Long::sum);
+            }
+            case "Accept", "Reject" -> {
+                String role = LogMessages.roleOf(message);
+                if (role != null) this.decisionsByRole.computeIfAbsent(role, key -> new long[2])[actionType.equals("Accept") ? 0 : 1]++;
+            }
+            case "Connection", "Disconnection" ->
+                    this.churnByHost.computeIfAbsent(LogMessages.hostOf(ipAddress), key -> new long[2])[actionType.equals("Connection") ? 0 : 1]++;
+            default -> {
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Merges another partial report into this one.
+     *
+     * @param other The other partial report.
+     */
+    private void merge(LogReport other) {
+        this.entries += other.entries;
+        this.firstTimestamp = Math.min(this.firstTimestamp, other.firstTimestamp);
+        this.lastTimestamp = Math.max(this.lastTimestamp, other.lastTimestamp);
+
+        other.messagesPerMinute.forEach((username, minutes) -> {
+            Map<Long, Integer> merged = this.messagesPerMinute.computeIfAbsent(username, key -> new HashMap<>());
+            minutes.forEach((minute, count) -> merged.merge(minute, count, Integer::sum));
+        });
+        other.launchesByApproval.forEach((role, count) -> this.launchesByApproval.merge(role, count, Long::sum));
+        other.decisionsByRole.forEach((role, counts) -> addCounts(this.decisionsByRole.computeIfAbsent(role, key -> new long[2]), counts));
+        other.churnByHost.forEach((host, counts) -> addCounts(this.churnByHost.computeIfAbsent(host, key -> new long[2]), counts));
+    }
+
+    /**
+     * Gets the number of aggregated entries.
+     *
+     * @return The number of entries.
+     */
+    public long getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Formats the report as a compact summary, listing only the users and IP addresses with the most activity.
+     *
+     * @param top The maximum number of users and IP addresses listed.
+     * @return The summary.
+     */
+    public String toSummary(int top) {
+        StringBuilder summary = new StringBuilder("[Log Report] ").append(this.entries).append(" entries");
+        if (this.entries == 0) return summary.append(".").toString();
+
+        summary.append(" from ").append(TIME_FORMATTER.format(Instant.ofEpochMilli(this.firstTimestamp)))
+                .append(" to ").append(TIME_FORMATTER.format(Instant.ofEpochMilli(this.lastTimestamp))).append(".");
+
+        summary.append("\n[Messages per User] total, peak per minute, average per active minute");
+        this.messagesPerMinute.entrySet().stream()
+                .map(entry -> new UserActivity(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingLong(UserActivity::total).reversed())
+                .limit(top)
+                .forEach(activity -> summary.append("\n").append(activity.username()).append(": ").append(activity.total()).append(", ").append(activity.peak())
+                        .append(", ").append(String.format(Locale.ROOT, "%.1f", (double) activity.total() / activity.activeMinutes())));
+
+        summary.append("\n[Missile Launches by Approval Role]");
+        this.launchesByApproval.forEach((role, count) -> summary.append(" ").append(role).append(": ").append(count).append(";"));
+
+        summary.append("\n[Requests by Role] accepted/rejected");
+        this.decisionsByRole.forEach((role, counts) -> summary.append(" ").append(role).append(": ").append(counts[0]).append("/").append(counts[1])
+                .append(String.format(Locale.ROOT, " (%.0f%% accepted);", 100.0 * counts[0] / (counts[0] + counts[1]))));
+
+        summary.append("\n[Connection Churn per IP] connections/disconnections");
+        this.churnByHost.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed())
+                .limit(top)
+                .forEach(entry -> summary.append("\n").append(entry.getKey()).append(": ").append(entry.getValue()[0]).append("/").append(entry.getValue()[1]));
+
+        return summary.toString();
+    }
+
+    /**
+     * Gets the role that has to approve the missile launches of a role, following the chain of command.
+     *
+     * @param role The role of the user who launched the missile.
+     * @return The approval role, or "None" for the roles that launch without approval.
+     */
+    private static String approvalOf(String role) {
+        try {
+            Role launcher = Role.valueOf(role);
+            return launcher.ordinal() + 1 < Role.values().length ? Role.values()[launcher.ordinal() + 1].name() : NO_APPROVAL;
+        } catch (IllegalArgumentException e) {
+            return NO_APPROVAL;
+        }
+    }
+
+    /**
+     * Adds a pair of counts to another.
+     *
+     * @param target The counts added to.
+     * @param source The counts to add.
+     */
+    private static void addCounts(long[] target, long[] source) {
+        target[0] += source[0];
+        target[1] += source[1];
+    }
+
+    /**
+     * The {@code UserActivity} record represents the messages of a user, summed over the minutes.
+     *
+     * @param username      The username of the user.
+     * @param total         The total number of messages.
+     * @param peak          The highest number of messages in a minute.
+     * @param activeMinutes The number of minutes with messages.
+     */
+    private record UserActivity(String username, long total, int peak, int activeMinutes) {
+        /**
+         * Sums the messages of a user.
+         *
+         * @param username The username of the user.
+         * @param minutes  The number of messages of the user by minute.
+         */
+        UserActivity(String username, Map<Long, Integer> minutes) {
+            this(username, minutes.values().stream().mapToLong(Integer::longValue).sum(), minutes.values().stream().mapToInt(Integer::intValue).max().orElse(0), minutes.size());
+        }
+    }
+}
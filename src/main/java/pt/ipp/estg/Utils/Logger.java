@@ -1,16 +1,46 @@
 package pt.ipp.estg.Utils;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import com.google.gson.JsonParseException;
+import pt.ipp.estg.Enums.FsyncPolicy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * The {@code Logger} class provides a simple logging mechanism for recording
  * actions along with relevant details such as IP address, action type, and message.
+ * <p>
+ * The entries are appended to an {@link AuditLog} of rotating binary segments, configured with the
+ * {@code log.*} settings, so logging an action doesn't wait for the disk. The first time the audit log
+ * is opened, the entries of the previous formats, the {@code logs.json} array and the {@code logs.ndjson}
+ * lines, are imported into it, so the history stays available to the queries and reports.
  *
  * @author Carlos Leite, Sergio Felix
  * @version 1.0
  */
 public class Logger {
+    /**
+     * The formatter of the date and time of the entries of the previous formats.
+     */
+    private static final DateTimeFormatter LEGACY_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    /**
+     * The audit log the entries are appended to, or {@code null} if it couldn't be opened.
+     */
+    private static final AuditLog auditLog = openAuditLog();
+
     /**
      * Logs the specified details including IP address, action type, and message.
      *
@@ -19,17 +49,177 @@ public class Logger {
      * @param message    The detailed message describing the action.
      */
     public static void log(String ipAddress, String actionType, String message) {
-        LogEntry logEntry = new LogEntry(getCurrentTime(), ipAddress, actionType, message);
-        JSON.saveLog(logEntry);
+        if (auditLog != null) auditLog.append(ipAddress, actionType, message);
+    }
+
+    /**
+     * Streams the logged entries of the segments in the specified range, oldest first, reading
+     * one segment at a time instead of loading the whole history.
+     *
+     * @param fromSegment The ID of the first segment to read.
+     * @param toSegment   The ID of the last segment to read.
+     * @return The stream of entries, which must be closed once it is no longer needed.
+     * @throws IOException If the audit log isn't open or an I/O error occurs while listing the segments.
+     */
+    public static Stream<LogEntry> readLogs(long fromSegment, long toSegment) throws IOException {
+        if (auditLog == null) throw new IOException("The audit log isn't open.");
+        return auditLog.read(fromSegment, toSegment);
+    }
+
+    /**
+     * Finds the most recent logged entries matching a query, using the indexes of the audit log.
+     *
+     * @param query The query.
+     * @return The matching entries, most recent first.
+     * @throws IOException If the audit log isn't open or an I/O error occurs while reading the entries.
+     */
+    public static List<LogEntry> queryLogs(LogQuery query) throws IOException {
+        if (auditLog == null) throw new IOException("The audit log isn't open.");
+        return auditLog.query(query);
+    }
+
+    /**
+     * Generates a report of the logged entries, aggregating the segments of the audit log in parallel.
+     *
+     * @return The report.
+     * @throws IOException If the audit log isn't open or an I/O error occurs while reading the entries.
+     */
+    public static LogReport reportLogs() throws IOException {
+        if (auditLog == null) throw new IOException("The audit log isn't open.");
+        return auditLog.report();
+    }
+
+    /**
+     * Gets the IDs of the audit log segments, oldest first.
+     *
+     * @return The IDs of the segments.
+     * @throws IOException If the audit log isn't open or an I/O error occurs while listing the segments.
+     */
+    public static List<Long> getLogSegments() throws IOException {
+        if (auditLog == null) throw new IOException("The audit log isn't open.");
+        return auditLog.segments();
     }
 
     /**
-     * Gets the current time in the format "dd/MM/yyyy HH:mm:ss".
+     * Opens the audit log configured by the {@code log.*} settings and registers a shutdown hook
+     * that writes the pending entries before the application exits. By default, the segments are
+     * stored in the {@code audit} directory, next to the {@code logs.json} resource. If the directory
+     * doesn't exist yet, the entries of the previous formats are imported first.
      *
-     * @return The current time as a formatted string.
+     * @return The audit log, or {@code null} if it couldn't be opened.
      */
-    private static String getCurrentTime() {
-        return new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date());
+    private static AuditLog openAuditLog() {
+        try {
+            String directoryName = Configuration.getString("log.directory", "");
+            Path legacyLog = Path.of(Resources.getPathFromResources("logs.json"));
+            Path directory = directoryName.isEmpty() ? legacyLog.resolveSibling("audit") : Path.of(directoryName);
+            int segmentSize = Configuration.getInt("log.segment-size-mb", 64) * 1024 * 1024;
+            if (Files.notExists(directory)) {
+                try {
+                    importLegacyLogs(legacyLog, directory, segmentSize);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Couldn't import the previous log entries, they won't be searchable!\n" + e.getMessage());
+                }
+            }
+            SegmentedLogStore store = new SegmentedLogStore(directory, segmentSize, TimeUnit.MINUTES.toMillis(Configuration.getInt("log.segment-max-age-minutes", 1440)), Configuration.getBoolean("log.compress-segments", true), TimeUnit.DAYS.toMillis(Configuration.getInt("log.retention-days", 28)));
+            AuditLog log = new AuditLog(store, Configuration.getInt("log.buffer-size", 65536), FsyncPolicy.valueOf(Configuration.getString("log.fsync", FsyncPolicy.Interval.name())), Configuration.getInt("log.fsync-interval-ms", 1000));
+            Runtime.getRuntime().addShutdownHook(new Thread(log::close));
+            return log;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Couldn't open the audit log, actions won't be logged!\n" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Imports the entries of the {@code logs.json} array and then of the {@code logs.ndjson} lines next to it,
+     * oldest first, into new segments. The segments are written in a temporary directory that then replaces
+     * the segment directory, so an interrupted import is started over rather than imported twice.
+     * Nothing is written if there are no entries to import.
+     *
+     * @param legacyLog   The path of the {@code logs.json} file.
+     * @param directory   The directory of the segment files, which doesn't exist yet.
+     * @param segmentSize The size of every segment file, in bytes.
+     * @throws IOException If an I/O error occurs while reading the entries or writing the segments.
+     */
+    private static void importLegacyLogs(Path legacyLog, Path directory, int segmentSize) throws IOException {
+        Path ndjsonLog = legacyLog.resolveSibling("logs.ndjson");
+        if (Files.notExists(legacyLog) && Files.notExists(ndjsonLog)) return;
+
+        Path temporary = directory.resolveSibling(directory.getFileName() + ".importing");
+        deleteDirectory(temporary);
+
+        int[] imported = {0};
+        IOException[] failure = {null};
+        SegmentedLogStore store = new SegmentedLogStore(temporary, segmentSize, Long.MAX_VALUE, false, 0);
+        try {
+            if (Files.exists(legacyLog)) {
+                try (Reader reader = Files.newBufferedReader(legacyLog, StandardCharsets.UTF_8)) {
+                    JsonCodecs.readArray(reader, JsonCodecs.LOG_ENTRY, entry -> importLegacyEntry(store, entry, imported, failure));
+                }
+            }
+            if (Files.exists(ndjsonLog)) {
+                try (BufferedReader reader = Files.newBufferedReader(ndjsonLog, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) continue;
+                        try {
+                            importLegacyEntry(store, JsonCodecs.LOG_ENTRY.fromJson(line), imported, failure);
+                        } catch (IOException | JsonParseException e) {
+                            System.err.println("Skipping an invalid line of " + ndjsonLog.getFileName() + "!\n" + line);
+                        }
+                    }
+                }
+            }
+            if (failure[0] != null) throw failure[0];
+            store.force();
+        } finally {
+            store.close();
+        }
+
+        if (imported[0] == 0) {
+            deleteDirectory(temporary);
+            return;
+        }
+        Files.move(temporary, directory, StandardCopyOption.ATOMIC_MOVE);
+        System.out.printf("Imported %d entries of %s and %s into the audit log.%n", imported[0], legacyLog.getFileName(), ndjsonLog.getFileName());
+    }
+
+    /**
+     * Deletes a directory and its files, if it exists.
+     *
+     * @param directory The directory.
+     * @throws IOException If an I/O error occurs while deleting.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (Files.notExists(directory)) return;
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    /**
+     * Appends an entry of the previous formats to the segments being imported. An entry with an invalid
+     * date and time is skipped, and the first I/O error is kept for the caller to throw.
+     *
+     * @param store    The store of the segments being imported.
+     * @param entry    The entry.
+     * @param imported The number of entries imported, incremented once the entry is appended.
+     * @param failure  The first I/O error, set if appending fails.
+     */
+    private static void importLegacyEntry(SegmentedLogStore store, LogEntry entry, int[] imported, IOException[] failure) {
+        if (failure[0] != null || entry == null) return;
+
+        try {
+            long timestamp = LocalDateTime.parse(entry.dateTime, LEGACY_TIME_FORMATTER).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            store.append(timestamp, String.valueOf(entry.ipAddress), String.valueOf(entry.actionType), String.valueOf(entry.message));
+            imported[0]++;
+        } catch (DateTimeParseException | NullPointerException e) {
+            System.err.println("Skipping a log entry with an invalid date and time!\n" + entry.dateTime);
+        } catch (IOException e) {
+            failure[0] = e;
+        }
     }
 
     /**
@@ -0,0 +1,98 @@
+package pt.ipp.estg.Utils;
+
+import pt.ipp.estg.Enums.Role;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+
+/**
+ * The {@code MulticastGroups} class provides the UDP multicast groups shared by the server and the clients
+ * when the multicast delivery is enabled. There is one global group, used for messages sent to everyone,
+ * and one group for each {@link Role}, used for messages sent to a role. The groups are consecutive
+ * addresses starting at the configured base address, the global group being the first one.
+ * <p>
+ * The groups carry no authentication: any host on the network that can reach them may join the group of
+ * any role, including the group of the Generals, so the multicast delivery must only be enabled on a
+ * trusted network.
+ * <p>
+ * For testing on a single Linux host over the loopback interface, set {@code multicast.interface=lo}
+ * after enabling multicast on it ({@code ip link set lo multicast on}).
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public class MulticastGroups {
+    /**
+     * The UDP port on which every multicast group is delivered.
+     */
+    public static final int PORT = Configuration.getInt("multicast.port", 4446);
+    /**
+     * The time-to-live of the multicast datagrams; {@code 0} keeps them on the host and {@code 1} on the LAN.
+     */
+    public static final int TIME_TO_LIVE = Configuration.getInt("multicast.ttl", 1);
+    /**
+     * The maximum number of bytes of a multicast datagram.
+     */
+    public static final int MAX_DATAGRAM_SIZE = 65507;
+    /**
+     * The address of the global group; the role groups follow it.
+     */
+    private static final String BASE_ADDRESS = Configuration.getString("multicast.address", "239.255.10.0");
+
+    /**
+     * Gets the group used for messages sent to everyone.
+     *
+     * @return The address of the global group.
+     * @throws UnknownHostException If the configured base address is invalid.
+     */
+    public static InetAddress global() throws UnknownHostException {
+        return offset(0);
+    }
+
+    /**
+     * Gets the group used for messages sent to the specified role.
+     *
+     * @param role The role of the recipients.
+     * @return The address of the role group.
+     * @throws UnknownHostException If the configured base address is invalid.
+     */
+    public static InetAddress of(Role role) throws UnknownHostException {
+        return offset(role.ordinal() + 1);
+    }
+
+    /**
+     * Gets the network interface configured for sending and receiving multicast datagrams.
+     *
+     * @return The configured network interface, or {@code null} to use the system default.
+     * @throws SocketException If an I/O error occurs while looking up the interface.
+     */
+    public static NetworkInterface getInterface() throws SocketException {
+        String name = Configuration.getString("multicast.interface", "");
+        return name.isEmpty() ? null : NetworkInterface.getByName(name);
+    }
+
+    /**
+     * Gets the address at the specified offset from the base address, carrying into the higher bytes.
+     *
+     * @param offset The offset from the base address.
+     * @return The address at the offset.
+     * @throws UnknownHostException If the configured base address is invalid, or the address at the offset
+     *                              isn't a multicast address.
+     */
+    private static InetAddress offset(int offset) throws UnknownHostException {
+        byte[] base = InetAddress.getByName(BASE_ADDRESS).getAddress();
+        byte[] sum = new BigInteger(1, base).add(BigInteger.valueOf(offset)).toByteArray();
+        byte[] address = new byte[base.length];
+        int length = Math.min(sum.length, address.length);
+        System.arraycopy(sum, sum.length - length, address, address.length - length, length);
+
+        InetAddress group = InetAddress.getByAddress(address);
+        if (!group.isMulticastAddress() || new BigInteger(1, address).compareTo(new BigInteger(1, base)) < 0) {
+            throw new UnknownHostException("The multicast group " + offset + " after " + BASE_ADDRESS + " isn't a multicast address!");
+        }
+        return group;
+    }
+}
@@ -0,0 +1,107 @@
+package pt.ipp.estg.Utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code RingBuffer} class is a bounded, lock-free queue for many producers and a single consumer.
+ * Producers claim a slot with a single compare-and-set on the tail and publish the element by
+ * advancing the sequence of the slot, so adding an element never blocks nor allocates.
+ * Only one thread may remove elements.
+ *
+ * @param <E> The type of the elements.
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+final class RingBuffer<E> {
+    /**
+     * The elements of the slots.
+     */
+    private final Object[] elements;
+    /**
+     * The sequence of each slot: equal to the position when the slot is free for that position,
+     * and to the position plus one when the element of that position has been published.
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * The mask used for mapping a position to a slot.
+     */
+    private final int mask;
+    /**
+     * The next position to be claimed by a producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * The next position to be removed by the consumer.
+     */
+    private long head = 0;
+
+    /**
+     * Constructs a new {@code RingBuffer} with at least the specified capacity.
+     *
+     * @param capacity The minimum number of elements the buffer can hold, rounded up to a power of two.
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element to the buffer. May be called by any thread.
+     *
+     * @param element The element to add.
+     * @return {@code true} if the element was added, {@code false} if the buffer is full.
+     */
+    boolean offer(E element) {
+        long position = this.tail.get();
+
+        while (true) {
+            int slot = (int) (position & this.mask);
+            long difference = this.sequences.get(slot) - position;
+
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.elements[slot] = element;
+                    this.sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = this.tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = this.tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest published element. Must only be called by the consumer thread.
+     *
+     * @return The oldest element, or {@code null} if there is no published element.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int slot = (int) (this.head & this.mask);
+        if (this.sequences.get(slot) != this.head + 1) return null;
+
+        E element = (E) this.elements[slot];
+        this.elements[slot] = null;
+        this.sequences.set(slot, this.head + this.elements.length);
+        this.head++;
+        return element;
+    }
+
+    /**
+     * Checks if the buffer has no published element. Must only be called by the consumer thread.
+     *
+     * @return {@code true} if there is no element to remove, {@code false} otherwise.
+     */
+    boolean isEmpty() {
+        return this.sequences.get((int) (this.head & this.mask)) != this.head + 1;
+    }
+}
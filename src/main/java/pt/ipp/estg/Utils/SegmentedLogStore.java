@@ -0,0 +1,685 @@
+package pt.ipp.estg.Utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The {@code SegmentedLogStore} class stores the audit log entries in a directory of fixed-size segment
+ * files, each written through a {@link MappedByteBuffer}. A new segment is started when the current one
+ * is full or older than the maximum segment age; sealed segments can be compressed with GZIP and are
+ * deleted once they are older than the retention period.
+ * <p>
+ * Every entry is stored as a compact binary record: its length and CRC32, followed by the timestamp in
+ * milliseconds and the length-prefixed UTF-8 bytes of the IP address, action type and message. A zero
+ * length marks the end of the written records, and a record with a wrong CRC32, such as one torn by a
+ * crash, ends the segment. The records can be streamed one segment at a time, without loading the
+ * whole history onto the heap.
+ * <p>
+ * Appending is not thread-safe; it is done by the single flusher of the {@link AuditLog}.
+ *
+ * @author Carlos Leite, Sergio Felix
+ * @version 1.0
+ */
+public final class SegmentedLogStore implements Closeable {
+    /**
+     * The file name suffix of the segments being or already written.
+     */
+    private static final String SEGMENT_SUFFIX = ".log";
+    /**
+     * The file name suffix of the compressed segments.
+     */
+    private static final String COMPRESSED_SUFFIX = ".log.gz";
+    /**
+     * The file name suffix of the block indexes of the compressed segments.
+     */
+    private static final String BLOCK_INDEX_SUFFIX = ".log.gz.idx";
+    /**
+     * The number of uncompressed bytes of every block of a compressed segment.
+     */
+    private static final int COMPRESSED_BLOCK_SIZE = 16 * 1024;
+    /**
+     * The number of bytes of the length and CRC32 that precede the body of every record.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+    /**
+     * The formatter used for the date and time of the entries read back.
+     */
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+    /**
+     * The directory of the segment files.
+     */
+    private final Path directory;
+    /**
+     * The size of every segment file, in bytes.
+     */
+    private final int segmentSize;
+    /**
+     * The maximum age of the segment being written before a new one is started, in milliseconds.
+     */
+    private final long maxSegmentAge;
+    /**
+     * Whether the sealed segments are compressed.
+     */
+    private final boolean compress;
+    /**
+     * The age after which sealed segments are deleted, in milliseconds, or {@code 0} to keep them forever.
+     */
+    private final long retention;
+    /**
+     * The thread that compresses and deletes the sealed segments, off the flusher thread.
+     */
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "audit-log-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * The listener told the ID of every segment deleted past the retention period.
+     */
+    private volatile LongConsumer deletionListener = id -> {
+    };
+    /**
+     * The checksum used for the records being written.
+     */
+    private final CRC32 crc = new CRC32();
+    /**
+     * The ID of the segment being written.
+     */
+    private long segmentId;
+    /**
+     * The time the segment being written was started, in milliseconds since the epoch.
+     */
+    private long segmentStarted;
+    /**
+     * The mapped contents of the segment being written.
+     */
+    private MappedByteBuffer segment;
+    /**
+     * The position up to which the segment being written has been forced to the storage device.
+     */
+    private int forcedPosition;
+
+    /**
+     * Opens the store in the specified directory, creating the directory if it doesn't exist, and resumes
+     * writing after the last valid record of the newest uncompressed segment.
+     *
+     * @param directory     The directory of the segment files.
+     * @param segmentSize   The size of every segment file, in bytes.
+     * @param maxSegmentAge The maximum age of the segment being written, in milliseconds.
+     * @param compress      Whether the sealed segments are compressed.
+     * @param retention     The age after which sealed segments are deleted, in milliseconds, or {@code 0} to keep them.
+     * @throws IOException If an I/O error occurs while opening the newest segment.
+     */
+    public SegmentedLogStore(Path directory, int segmentSize, long maxSegmentAge, boolean compress, long retention) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegmentAge = maxSegmentAge;
+        this.compress = compress;
+        this.retention = retention;
+
+        Files.createDirectories(directory);
+        List<Long> segments = segments();
+        long lastId = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+
+        if (lastId > 0 && Files.exists(segmentPath(lastId, SEGMENT_SUFFIX))) {
+            openSegment(lastId);
+            this.segment.position(validLength(this.segment));
+            this.forcedPosition = this.segment.position();
+            this.segmentStarted = Files.getLastModifiedTime(segmentPath(lastId, SEGMENT_SUFFIX)).toMillis();
+        } else {
+            openSegment(lastId + 1);
+        }
+    }
+
+    /**
+     * Appends an entry to the segment being written, starting a new segment first if the entry
+     * doesn't fit or the segment is too old.
+     *
+     * @param timestamp  The time of the entry, in milliseconds since the epoch.
+     * @param ipAddress  The IP address associated with the action.
+     * @param actionType The type of action being logged.
+     * @param message    The detailed message describing the action.
+     * @return The offset of the record in the segment being written, once the entry has been appended.
+     * @throws IOException If the entry is larger than a segment or an I/O error occurs while rotating.
+     */
+    public int append(long timestamp, String ipAddress, String actionType, String message) throws IOException {
+        byte[] ip = ipAddress.getBytes(StandardCharsets.UTF_8);
+        byte[] type = actionType.getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        int bodySize = Long.BYTES + Short.BYTES + ip.length + Short.BYTES + type.length + Integer.BYTES + text.length;
+        int recordSize = RECORD_HEADER_SIZE + bodySize;
+
+        if (recordSize + Integer.BYTES > this.segmentSize || ip.length > Short.MAX_VALUE || type.length > Short.MAX_VALUE) {
+            throw new IOException("The log entry is too large for a segment (" + recordSize + " bytes).");
+        }
+        if (this.segment.remaining() < recordSize + Integer.BYTES || timestamp - this.segmentStarted >= this.maxSegmentAge) {
+            rotate();
+        }
+
+        int start = this.segment.position();
+        this.segment.position(start + RECORD_HEADER_SIZE);
+        this.segment.putLong(timestamp);
+        this.segment.putShort((short) ip.length).put(ip);
+        this.segment.putShort((short) type.length).put(type);
+        this.segment.putInt(text.length).put(text);
+
+        this.crc.reset();
+        this.crc.update(this.segment.slice(start + RECORD_HEADER_SIZE, bodySize));
+        this.segment.putInt(start + Integer.BYTES, (int) this.crc.getValue());
+        this.segment.putInt(start, bodySize);
+        return start;
+    }
+
+    /**
+     * Sets the listener told the ID of every segment deleted past the retention period, on the maintenance thread.
+     *
+     * @param listener The listener.
+     */
+    public void onSegmentDeleted(LongConsumer listener) {
+        this.deletionListener = listener;
+    }
+
+    /**
+     * Gets the ID of the segment being written.
+     *
+     * @return The ID of the segment.
+     */
+    public long getSegmentId() {
+        return this.segmentId;
+    }
+
+    /**
+     * Forces the records written since the last force to the storage device.
+     */
+    public void force() {
+        int position = this.segment.position();
+        if (position > this.forcedPosition) {
+            this.segment.force(this.forcedPosition, position - this.forcedPosition);
+            this.forcedPosition = position;
+        }
+    }
+
+    /**
+     * Starts a new segment if the segment being written is older than the maximum segment age and holds records.
+     *
+     * @throws IOException If an I/O error occurs while rotating.
+     */
+    public void rotateIfExpired() throws IOException {
+        if (this.segment.position() > 0 && System.currentTimeMillis() - this.segmentStarted >= this.maxSegmentAge) {
+            rotate();
+        }
+    }
+
+    /**
+     * Seals the segment being written and starts the next one. The sealed segment is compressed,
+     * if enabled, and the segments past the retention period are deleted, on the maintenance thread.
+     *
+     * @throws IOException If an I/O error occurs while opening the next segment.
+     */
+    private void rotate() throws IOException {
+        force();
+        long sealedId = this.segmentId;
+        openSegment(sealedId + 1);
+
+        this.maintenance.execute(() -> {
+            try {
+                if (this.compress) compressSegment(sealedId);
+                deleteExpiredSegments();
+            } catch (IOException e) {
+                System.err.println("Couldn't compress or delete the audit log segments!\n" + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Creates or opens a segment file and maps it for writing.
+     *
+     * @param id The ID of the segment.
+     * @throws IOException If an I/O error occurs while opening or mapping the file.
+     */
+    private void openSegment(long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(id, SEGMENT_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+        }
+        this.segmentId = id;
+        this.segmentStarted = System.currentTimeMillis();
+        this.forcedPosition = 0;
+    }
+
+    /**
+     * Compresses a sealed segment with GZIP, replacing the uncompressed file. Every block of the segment
+     * is compressed as a separate GZIP member, and the file offset of each member is saved in a block
+     * index, so a record can be read by decompressing only from the block that holds it.
+     *
+     * @param id The ID of the segment.
+     * @throws IOException If an I/O error occurs while compressing.
+     */
+    private void compressSegment(long id) throws IOException {
+        Path source = segmentPath(id, SEGMENT_SUFFIX);
+        Path target = segmentPath(id, COMPRESSED_SUFFIX);
+        Path temporary = this.directory.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+             DataOutputStream blockIndex = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segmentPath(id, BLOCK_INDEX_SUFFIX))));
+             OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int length = validLength(records);
+            byte[] chunk = new byte[COMPRESSED_BLOCK_SIZE];
+            ByteArrayOutputStream block = new ByteArrayOutputStream(COMPRESSED_BLOCK_SIZE);
+            long compressedPosition = 0;
+
+            for (int position = 0; position < length; position += chunk.length) {
+                int size = Math.min(chunk.length, length - position);
+                records.get(position, chunk, 0, size);
+
+                block.reset();
+                try (GZIPOutputStream member = new GZIPOutputStream(block)) {
+                    member.write(chunk, 0, size);
+                }
+                blockIndex.writeLong(compressedPosition);
+                block.writeTo(outputStream);
+                compressedPosition += block.size();
+            }
+        }
+
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(source);
+    }
+
+    /**
+     * Deletes the sealed segments that were last modified before the retention period,
+     * telling the deletion listener about each segment no longer stored.
+     *
+     * @throws IOException If an I/O error occurs while deleting.
+     */
+    private void deleteExpiredSegments() throws IOException {
+        if (this.retention <= 0) return;
+
+        long oldest = System.currentTimeMillis() - this.retention;
+        for (long id : segments()) {
+            if (id >= this.segmentId) break;
+            for (String suffix : new String[]{SEGMENT_SUFFIX, COMPRESSED_SUFFIX, BLOCK_INDEX_SUFFIX}) {
+                Path path = segmentPath(id, suffix);
+                if (Files.exists(path) && Files.getLastModifiedTime(path).toMillis() < oldest) Files.delete(path);
+            }
+            if (Files.notExists(segmentPath(id, SEGMENT_SUFFIX)) && Files.notExists(segmentPath(id, COMPRESSED_SUFFIX))) {
+                this.deletionListener.accept(id);
+            }
+        }
+    }
+
+    /**
+     * Gets the IDs of the stored segments, oldest first.
+     *
+     * @return The IDs of the segments.
+     * @throws IOException If an I/O error occurs while listing the directory.
+     */
+    public List<Long> segments() throws IOException {
+        TreeSet<Long> ids = new TreeSet<>();
+
+        try (Stream<Path> files = Files.list(this.directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                String suffix = name.endsWith(COMPRESSED_SUFFIX) ? COMPRESSED_SUFFIX : name.endsWith(SEGMENT_SUFFIX) ? SEGMENT_SUFFIX : null;
+                if (suffix == null) return;
+                try {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - suffix.length())));
+                } catch (NumberFormatException ignored) {
+                }
+            });
+        }
+
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Streams the entries of the segments in the specified range, oldest first. The segments are read
+     * one at a time, as the stream is consumed, so the stream must be closed once it is no longer needed.
+     *
+     * @param fromSegment The ID of the first segment to read.
+     * @param toSegment   The ID of the last segment to read.
+     * @return The stream of entries.
+     * @throws IOException If an I/O error occurs while listing the segments.
+     */
+    public Stream<Logger.LogEntry> read(long fromSegment, long toSegment) throws IOException {
+        return segments().stream()
+                .filter(id -> id >= fromSegment && id <= toSegment)
+                .flatMap(this::readSegment);
+    }
+
+    /**
+     * Streams the entries of a single segment, compressed or not.
+     *
+     * @param id The ID of the segment.
+     * @return The stream of entries, empty if the segment no longer exists.
+     */
+    private Stream<Logger.LogEntry> readSegment(long id) {
+        try {
+            DataInputStream inputStream = openSegmentForReading(id);
+
+            Spliterator<Logger.LogEntry> records = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Logger.LogEntry> action) {
+                    Record record = readRecord(inputStream);
+                    if (record == null) return false;
+                    action.accept(record.toLogEntry());
+                    return true;
+                }
+            };
+
+            return StreamSupport.stream(records, false).onClose(() -> {
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (NoSuchFileException e) {
+            return Stream.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Visits the records of a segment in order, with their offsets, until the end of the records
+     * or until the visitor stops. Does nothing if the segment no longer exists.
+     *
+     * @param id      The ID of the segment.
+     * @param visitor The visitor of the records.
+     * @throws IOException If an I/O error occurs while reading the segment.
+     */
+    public void scan(long id, RecordVisitor visitor) throws IOException {
+        try (DataInputStream inputStream = openSegmentForReading(id)) {
+            int offset = 0;
+            Record record;
+            while ((record = readRecord(inputStream)) != null && visitor.visit(offset, record.timestamp(), record.ipAddress(), record.actionType(), record.message())) {
+                offset += record.size();
+            }
+        } catch (NoSuchFileException ignored) {
+        }
+    }
+
+    /**
+     * Reads the records at the specified offsets of a segment, skipping over the records in between
+     * instead of decoding them. In a compressed segment, the reading jumps to the block of the next
+     * record whenever it is farther than a block away. Does nothing if the segment no longer exists.
+     *
+     * @param id      The ID of the segment.
+     * @param offsets The offsets of the records, in ascending order.
+     * @param action  The action given the index of each offset and the entry read at it.
+     * @throws IOException If an I/O error occurs while reading the segment.
+     */
+    public void readAt(long id, int[] offsets, BiConsumer<Integer, Logger.LogEntry> action) throws IOException {
+        long[] blocks = readBlockIndex(id);
+        DataInputStream inputStream = null;
+        long position = 0;
+
+        try {
+            for (int i = 0; i < offsets.length; i++) {
+                if (inputStream == null || (blocks != null && offsets[i] - position > COMPRESSED_BLOCK_SIZE)) {
+                    int block = blocks == null ? 0 : Math.min(offsets[i] / COMPRESSED_BLOCK_SIZE, blocks.length - 1);
+                    if (inputStream != null) inputStream.close();
+                    inputStream = blocks == null ? openSegmentForReading(id) : openCompressedSegment(id, blocks[block]);
+                    position = (long) block * COMPRESSED_BLOCK_SIZE;
+                }
+
+                inputStream.skipNBytes(offsets[i] - position);
+                Record record = readRecord(inputStream);
+                if (record == null) return;
+                action.accept(i, record.toLogEntry());
+                position = offsets[i] + record.size();
+            }
+        } catch (NoSuchFileException | EOFException ignored) {
+        } finally {
+            if (inputStream != null) inputStream.close();
+        }
+    }
+
+    /**
+     * Reads the block index of a compressed segment.
+     *
+     * @param id The ID of the segment.
+     * @return The file offset of each block, or {@code null} if the segment isn't compressed.
+     * @throws IOException If an I/O error occurs while reading the block index.
+     */
+    private long[] readBlockIndex(long id) throws IOException {
+        if (!Files.exists(segmentPath(id, COMPRESSED_SUFFIX))) return null;
+
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segmentPath(id, BLOCK_INDEX_SUFFIX)));
+            long[] blocks = new long[bytes.remaining() / Long.BYTES];
+            bytes.asLongBuffer().get(blocks);
+            return blocks.length > 0 ? blocks : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens a compressed segment for reading from the start of a block.
+     *
+     * @param id               The ID of the segment.
+     * @param compressedOffset The file offset of the block.
+     * @return The decompressed contents of the segment from the block.
+     * @throws IOException If the segment doesn't exist or an I/O error occurs while opening it.
+     */
+    private DataInputStream openCompressedSegment(long id, long compressedOffset) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(id, COMPRESSED_SUFFIX), StandardOpenOption.READ);
+        channel.position(compressedOffset);
+        return new DataInputStream(new GZIPInputStream(new BufferedInputStream(Channels.newInputStream(channel))));
+    }
+
+    /**
+     * Opens a segment for reading, decompressing it if it has been compressed, or mapping it otherwise.
+     *
+     * @param id The ID of the segment.
+     * @return The contents of the segment.
+     * @throws IOException If the segment doesn't exist or an I/O error occurs while opening it.
+     */
+    private DataInputStream openSegmentForReading(long id) throws IOException {
+        try {
+            return openCompressedSegment(id, 0);
+        } catch (NoSuchFileException e) {
+            try (FileChannel channel = FileChannel.open(segmentPath(id, SEGMENT_SUFFIX), StandardOpenOption.READ)) {
+                return new DataInputStream(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+            } catch (NoSuchFileException ignored) {
+                // The segment may have been compressed since the first attempt.
+                return openCompressedSegment(id, 0);
+            }
+        }
+    }
+
+    /**
+     * Reads the next record of a segment.
+     *
+     * @param inputStream The contents of the segment, positioned at a record.
+     * @return The record, or {@code null} at the end of the records or at an invalid record.
+     */
+    private static Record readRecord(DataInputStream inputStream) {
+        try {
+            int bodySize = inputStream.readInt();
+            int checksum = inputStream.readInt();
+            if (bodySize <= 0) return null;
+
+            byte[] body = inputStream.readNBytes(bodySize);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (body.length != bodySize || (int) crc.getValue() != checksum) return null;
+
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            long timestamp = buffer.getLong();
+            String ipAddress = readString(buffer, buffer.getShort());
+            String actionType = readString(buffer, buffer.getShort());
+            String message = readString(buffer, buffer.getInt());
+            return new Record(timestamp, ipAddress, actionType, message, RECORD_HEADER_SIZE + bodySize);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a UTF-8 string of the specified length.
+     *
+     * @param buffer The buffer positioned at the string.
+     * @param length The length of the string in bytes.
+     * @return The decoded string.
+     */
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Finds the length of the valid records at the start of a segment.
+     *
+     * @param records The contents of the segment.
+     * @return The number of bytes of the valid records.
+     */
+    private static int validLength(ByteBuffer records) {
+        CRC32 crc = new CRC32();
+        int position = 0;
+
+        while (position + RECORD_HEADER_SIZE <= records.limit()) {
+            int bodySize = records.getInt(position);
+            if (bodySize <= 0 || bodySize > records.limit() - position - RECORD_HEADER_SIZE) break;
+
+            crc.reset();
+            crc.update(records.slice(position + RECORD_HEADER_SIZE, bodySize));
+            if ((int) crc.getValue() != records.getInt(position + Integer.BYTES)) break;
+
+            position += RECORD_HEADER_SIZE + bodySize;
+        }
+
+        return position;
+    }
+
+    /**
+     * Gets the path of a segment file.
+     *
+     * @param id     The ID of the segment.
+     * @param suffix The file name suffix.
+     * @return The path of the segment file.
+     */
+    private Path segmentPath(long id, String suffix) {
+        return this.directory.resolve(String.format("%020d", id) + suffix);
+    }
+
+    /**
+     * Stops the maintenance thread once it has compressed and deleted the pending segments.
+     * The written records are left for the operating system to write back, unless forced before.
+     */
+    @Override
+    public void close() {
+        this.maintenance.shutdown();
+    }
+
+    /**
+     * The {@code RecordVisitor} interface receives the records of a segment as they are scanned.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /**
+         * Visits a record.
+         *
+         * @param offset     The offset of the record in the segment.
+         * @param timestamp  The time of the entry, in milliseconds since the epoch.
+         * @param ipAddress  The IP address associated with the action.
+         * @param actionType The type of action being logged.
+         * @param message    The detailed message describing the action.
+         * @return {@code true} to continue scanning, {@code false} to stop.
+         */
+        boolean visit(int offset, long timestamp, String ipAddress, String actionType, String message);
+    }
+
+    /**
+     * The {@code Record} record represents a decoded record of a segment.
+     *
+     * @param timestamp  The time of the entry, in milliseconds since the epoch.
+     * @param ipAddress  The IP address associated with the action.
+     * @param actionType The type of action being logged.
+     * @param message    The detailed message describing the action.
+     * @param size       The number of bytes of the record, including its header.
+     */
+    private record Record(long timestamp, String ipAddress, String actionType, String message, int size) {
+        /**
+         * Converts the record to a log entry, formatting its date and time.
+         *
+         * @return The log entry.
+         */
+        Logger.LogEntry toLogEntry() {
+            return new Logger.LogEntry(TIME_FORMATTER.format(Instant.ofEpochMilli(this.timestamp)), this.ipAddress, this.actionType, this.message);
+        }
+    }
+
+    /**
+     * The {@code ByteBufferInputStream} class is an {@link InputStream} over the contents of a buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        /**
+         * The buffer being read.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructs a new {@code ByteBufferInputStream} over the specified buffer.
+         *
+         * @param buffer The buffer to read.
+         */
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!this.buffer.hasRemaining()) return -1;
+            int size = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, size);
+            return size;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long skip(long length) {
+            int size = (int) Math.max(0, Math.min(length, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + size);
+            return size;
+        }
+    }
+}